@@ -0,0 +1,155 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.agent;
+
+import ch.raffael.sansnull.agent.runtime.Checks;
+import ch.raffael.sansnull.agent.runtime.ChecksMXBean;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * The agent, options are comma separated:
+ *
+ * <ul>
+ *   <li>{@code mode=throw|record|off}: see {@link Checks.Mode}, default
+ *     is {@code throw};</li>
+ *   <li>{@code include=<packages>}, {@code exclude=<packages>}: only
+ *     weave classes in or not in these packages (including
+ *     sub-packages), separated by {@code ;};</li>
+ *   <li>{@code jmx}: register the {@link ChecksMXBean} to switch the mode
+ *     and read the recorded violations at runtime;</li>
+ *   <li>{@code report}: print the recorded violations on exit.</li>
+ * </ul>
+ *
+ * <p> Example:
+ * {@code -javaagent:sansnull-agent.jar=mode=record,include=com.example,jmx}
+ * </p>
+ */
+public final class Agent {
+
+  private static final String RUNTIME_PACKAGE = "ch/raffael/sansnull/agent/runtime/";
+
+  private Agent() {
+  }
+
+  public static void premain(@Nullable String args, @NotNull Instrumentation instrumentation)
+      throws IOException, URISyntaxException, JMException {
+    // before touching anything in the runtime package
+    appendRuntimeToBootstrapClassPath(instrumentation);
+    var includes = new ArrayList<String>();
+    var excludes = new ArrayList<String>();
+    var jmx = false;
+    var report = false;
+    for (var option : args == null ? new String[0] : args.split(",")) {
+      var eq = option.indexOf('=');
+      var key = (eq < 0 ? option : option.substring(0, eq)).trim();
+      var value = eq < 0 ? "" : option.substring(eq + 1).trim();
+      switch (key) {
+        case "mode":
+          Checks.mode(Checks.Mode.valueOf(value.toUpperCase(Locale.ROOT)));
+          break;
+        case "include":
+          includes.addAll(packages(value));
+          break;
+        case "exclude":
+          excludes.addAll(packages(value));
+          break;
+        case "jmx":
+          jmx = true;
+          break;
+        case "report":
+          report = true;
+          break;
+        case "":
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown SansNull agent option: " + option);
+      }
+    }
+    if (jmx) {
+      ManagementFactory.getPlatformMBeanServer()
+          .registerMBean(new ChecksMXBean.Impl(), new ObjectName("ch.raffael.sansnull:type=Checks"));
+    }
+    if (report) {
+      Runtime.getRuntime().addShutdownHook(new Thread(() ->
+          Checks.violations().forEach((element, count) ->
+              System.err.println("SansNull violation: " + element + " (" + count + " times)")),
+          "SansNull report"));
+    }
+    instrumentation.addTransformer(new SansNullTransformer(instrumentation, includes, excludes));
+  }
+
+  @NotNull
+  private static List<String> packages(@NotNull String value) {
+    var packages = new ArrayList<String>();
+    for (var name : value.split(";")) {
+      if (!name.isBlank()) {
+        packages.add(name.trim().replace('.', '/') + "/");
+      }
+    }
+    return packages;
+  }
+
+  /**
+   * The woven classes may come from any class loader, but they all must
+   * see the same {@link Checks}, so the runtime goes on the bootstrap class
+   * path. The rest of the agent (including its relocated ASM) is only used
+   * by the transformer and stays with the system class loader, where it
+   * isn't visible to classes loaded by the bootstrap or platform loader.
+   */
+  private static void appendRuntimeToBootstrapClassPath(@NotNull Instrumentation instrumentation)
+      throws IOException, URISyntaxException {
+    var agentJar = Path.of(Agent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    var runtimeJar = Files.createTempFile("sansnull-agent-runtime", ".jar");
+    runtimeJar.toFile().deleteOnExit();
+    try (var in = new JarFile(agentJar.toFile()); var out = new JarOutputStream(Files.newOutputStream(runtimeJar))) {
+      var entries = in.entries();
+      while (entries.hasMoreElements()) {
+        var entry = entries.nextElement();
+        if (entry.getName().startsWith(RUNTIME_PACKAGE)) {
+          out.putNextEntry(new JarEntry(entry.getName()));
+          try (var entryIn = in.getInputStream(entry)) {
+            entryIn.transferTo(out);
+          }
+          out.closeEntry();
+        }
+      }
+    }
+    instrumentation.appendToBootstrapClassLoaderSearch(new JarFile(runtimeJar.toFile()));
+  }
+}
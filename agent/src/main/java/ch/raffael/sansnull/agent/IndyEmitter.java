@@ -0,0 +1,65 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.agent;
+
+import ch.raffael.sansnull.agent.runtime.Checks;
+import ch.raffael.sansnull.analyzer.NullCheck;
+import ch.raffael.sansnull.weaver.CheckEmitter;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Emits the checks as {@code invokedynamic} instructions bootstrapped by
+ * {@link Checks}, so they can be switched off at runtime.
+ */
+final class IndyEmitter implements CheckEmitter {
+
+  private static final Handle BOOTSTRAP = new Handle(Opcodes.H_INVOKESTATIC,
+      Type.getInternalName(Checks.class), "bootstrap",
+      MethodType.methodType(CallSite.class, MethodHandles.Lookup.class, String.class, MethodType.class,
+          String.class, Class.class).toMethodDescriptorString(),
+      false);
+
+  @Override
+  public boolean canWeave(@NotNull ClassNode owner) {
+    return (owner.version & 0xffff) >= Opcodes.V1_7;
+  }
+
+  @Override
+  @NotNull
+  public InsnList check(@NotNull ClassNode owner, @NotNull NullCheck check, @NotNull String message) {
+    var code = new InsnList();
+    code.add(new InvokeDynamicInsnNode("check", "(Ljava/lang/Object;)V", BOOTSTRAP,
+        message, Type.getObjectType(check.exception())));
+    return code;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.agent;
+
+import ch.raffael.sansnull.agent.runtime.Checks;
+import ch.raffael.sansnull.analyzer.ClassPath;
+import ch.raffael.sansnull.analyzer.Resolver;
+import ch.raffael.sansnull.weaver.Weaver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.WeakReference;
+import java.security.ProtectionDomain;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Weaves the classes as they're loaded. There's one {@link Weaver} per
+ * class loader, so the scopes (including the package scopes) are
+ * resolved once per class loader. Super classes, {@code package-info}
+ * and annotations are read through the class loader's resources, without
+ * loading them.
+ *
+ * <p> Woven classes in named modules get a read edge to the module of
+ * {@link Checks}, the unnamed module of the bootstrap class loader,
+ * otherwise they couldn't link the {@code invokedynamic} bootstrap. </p>
+ */
+final class SansNullTransformer implements ClassFileTransformer {
+
+  // the application's ASM, assembled at runtime because the relocation of
+  // our own ASM in the agent jar would rewrite the literal
+  private static final String ASM_PREFIX = String.join("/", "org", "objectweb", "asm", "");
+  private static final List<String> IGNORED_PREFIXES = List.of(
+      "java/", "javax/", "jdk/", "sun/", "com/sun/", ASM_PREFIX, "ch/raffael/sansnull/");
+
+  @NotNull
+  private final Instrumentation instrumentation;
+  @NotNull
+  private final List<String> includes;
+  @NotNull
+  private final List<String> excludes;
+  private final Map<ClassLoader, Weaver> weavers = new WeakHashMap<>();
+
+  SansNullTransformer(@NotNull Instrumentation instrumentation, @NotNull List<String> includes,
+                      @NotNull List<String> excludes) {
+    this.instrumentation = instrumentation;
+    this.includes = includes;
+    this.excludes = excludes;
+  }
+
+  @Override
+  @Nullable
+  public byte[] transform(Module module, ClassLoader loader, String className, Class<?> classBeingRedefined,
+                          ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+    if (loader == null || className == null || classBeingRedefined != null || !accept(className)) {
+      return null;
+    }
+    try {
+      var woven = weaver(loader).weave(classfileBuffer);
+      if (woven != null) {
+        addReadEdge(module);
+      }
+      return woven;
+    }
+    catch (Throwable e) {
+      // the JVM would just ignore it, but we want to know
+      System.getLogger(SansNullTransformer.class.getName())
+          .log(System.Logger.Level.ERROR, "Error weaving " + className, e);
+      return null;
+    }
+  }
+
+  private void addReadEdge(@NotNull Module module) {
+    var runtime = Checks.class.getModule();
+    if (module.isNamed() && !module.canRead(runtime)) {
+      instrumentation.redefineModule(module, Set.of(runtime), Map.of(), Map.of(), Set.of(), Map.of());
+    }
+  }
+
+  private boolean accept(@NotNull String className) {
+    if (IGNORED_PREFIXES.stream().anyMatch(className::startsWith)) {
+      return false;
+    }
+    if (!includes.isEmpty() && includes.stream().noneMatch(className::startsWith)) {
+      return false;
+    }
+    return excludes.stream().noneMatch(className::startsWith);
+  }
+
+  @NotNull
+  private Weaver weaver(@NotNull ClassLoader loader) {
+    synchronized (weavers) {
+      return weavers.computeIfAbsent(loader, l -> {
+        // the weaver is referenced by the map, it must not keep the class loader alive
+        var ref = new WeakReference<>(l);
+        var classPath = new ClassPath(name -> {
+          var classLoader = ref.get();
+          if (classLoader == null) {
+            return null;
+          }
+          try (var in = classLoader.getResourceAsStream(name + ".class")) {
+            return in == null ? null : in.readAllBytes();
+          }
+        });
+        return new Weaver(new Resolver(classPath), IndyEmitter::new);
+      });
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.agent.runtime;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The runtime part of the agent, the checks are {@code invokedynamic}
+ * instructions bootstrapped here.
+ *
+ * <p> Each call site is linked to the code for the current {@link Mode},
+ * guarded by a {@link SwitchPoint}. Changing the mode invalidates the
+ * switch point, the call sites will be relinked on their next call. The
+ * JIT doesn't need to check the switch point, it deoptimises the
+ * dependent code when it's invalidated instead. So with {@link Mode#OFF},
+ * the checks are removed completely. </p>
+ *
+ * <p> This class is loaded by the bootstrap class loader, so it must not
+ * depend on anything but the JDK. </p>
+ */
+public final class Checks {
+
+  public enum Mode {
+    /**
+     * Throw the exception specified by {@code @SansNull}.
+     */
+    THROW,
+    /**
+     * Count violations and log the first one of each element with a
+     * stack trace, but don't throw.
+     */
+    RECORD,
+    /**
+     * Don't check anything.
+     */
+    OFF
+  }
+
+  private static final MethodHandle THROW_IF_NULL;
+  private static final MethodHandle RECORD_IF_NULL;
+  private static final MethodHandle RELINK;
+
+  static {
+    try {
+      var lookup = MethodHandles.lookup();
+      THROW_IF_NULL = lookup.findStatic(Checks.class, "throwIfNull",
+          MethodType.methodType(void.class, Object.class, String.class, MethodHandle.class));
+      RECORD_IF_NULL = lookup.findStatic(Checks.class, "recordIfNull",
+          MethodType.methodType(void.class, Object.class, String.class));
+      RELINK = lookup.findVirtual(CheckCallSite.class, "relink", MethodType.methodType(void.class, Object.class));
+    }
+    catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private static final Map<String, LongAdder> violations = new ConcurrentHashMap<>();
+  private static volatile Mode mode = Mode.THROW;
+  private static SwitchPoint switchPoint = new SwitchPoint();
+
+  private Checks() {
+  }
+
+  public static Mode mode() {
+    return mode;
+  }
+
+  public static synchronized void mode(Mode mode) {
+    if (mode == Checks.mode) {
+      return;
+    }
+    Checks.mode = mode;
+    var invalidated = switchPoint;
+    switchPoint = new SwitchPoint();
+    SwitchPoint.invalidateAll(new SwitchPoint[] {invalidated});
+  }
+
+  /**
+   * The number of violations per element recorded in {@link Mode#RECORD}.
+   */
+  public static Map<String, Long> violations() {
+    var result = new TreeMap<String, Long>();
+    violations.forEach((element, count) -> result.put(element, count.sum()));
+    return result;
+  }
+
+  public static void resetViolations() {
+    violations.clear();
+  }
+
+  /**
+   * The bootstrap method for the checks:
+   * {@code invokedynamic check(Object)V [message, exception]}.
+   */
+  public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type,
+                                   String message, Class<?> exception) throws ReflectiveOperationException {
+    var constructor = lookup.findConstructor(exception, MethodType.methodType(void.class, String.class))
+        .asType(MethodType.methodType(RuntimeException.class, String.class));
+    var site = new CheckCallSite(type, message, constructor);
+    site.link();
+    return site;
+  }
+
+  private static void throwIfNull(Object value, String message, MethodHandle exception) throws Throwable {
+    if (value == null) {
+      throw (RuntimeException) exception.invokeExact(message);
+    }
+  }
+
+  private static void recordIfNull(Object value, String message) {
+    if (value == null) {
+      var count = violations.get(message);
+      if (count == null) {
+        var created = new LongAdder();
+        count = violations.putIfAbsent(message, created);
+        if (count == null) {
+          count = created;
+          // not while updating the map, the logger may run into another violation
+          System.getLogger(Checks.class.getName())
+              .log(System.Logger.Level.WARNING, "SansNull violation: " + message, new NullPointerException(message));
+        }
+      }
+      count.increment();
+    }
+  }
+
+  private static final class CheckCallSite extends MutableCallSite {
+
+    private final String message;
+    private final MethodHandle exception;
+
+    CheckCallSite(MethodType type, String message, MethodHandle exception) {
+      super(type);
+      this.message = message;
+      this.exception = exception;
+    }
+
+    void link() {
+      MethodHandle check;
+      SwitchPoint guard;
+      synchronized (Checks.class) {
+        switch (mode) {
+          case THROW:
+            check = MethodHandles.insertArguments(THROW_IF_NULL, 1, message, exception);
+            break;
+          case RECORD:
+            check = MethodHandles.insertArguments(RECORD_IF_NULL, 1, message);
+            break;
+          default:
+            check = MethodHandles.empty(type());
+        }
+        guard = switchPoint;
+      }
+      setTarget(guard.guardWithTest(check.asType(type()), RELINK.bindTo(this).asType(type())));
+    }
+
+    @SuppressWarnings("unused")
+    private void relink(Object value) throws Throwable {
+      link();
+      getTarget().invoke(value);
+    }
+  }
+}
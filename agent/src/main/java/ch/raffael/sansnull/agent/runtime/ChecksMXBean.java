@@ -0,0 +1,63 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.agent.runtime;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * JMX access to the {@link Checks}, registered as
+ * {@code ch.raffael.sansnull:type=Checks} if enabled.
+ */
+public interface ChecksMXBean {
+
+  String getMode();
+
+  void setMode(String mode);
+
+  Map<String, Long> getViolations();
+
+  void resetViolations();
+
+  final class Impl implements ChecksMXBean {
+    @Override
+    public String getMode() {
+      return Checks.mode().name();
+    }
+
+    @Override
+    public void setMode(String mode) {
+      Checks.mode(Checks.Mode.valueOf(mode.toUpperCase(Locale.ROOT)));
+    }
+
+    @Override
+    public Map<String, Long> getViolations() {
+      return Checks.violations();
+    }
+
+    @Override
+    public void resetViolations() {
+      Checks.resetViolations();
+    }
+  }
+}
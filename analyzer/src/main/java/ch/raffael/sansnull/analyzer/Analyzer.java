@@ -0,0 +1,109 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.analyzer;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the members of a class that have no nullability, neither by an
+ * explicit annotation nor by {@code @SansNull}.
+ */
+public final class Analyzer {
+
+  @NotNull
+  private final Resolver resolver;
+
+  public Analyzer(@NotNull Resolver resolver) {
+    this.resolver = resolver;
+  }
+
+  @NotNull
+  public List<String> analyze(@NotNull ClassInfo info) {
+    var problems = new ArrayList<String>();
+    if (isIgnored(info)) {
+      return problems;
+    }
+    for (var field : info.fields) {
+      if (!isIgnored(field.access) && (field.access & Opcodes.ACC_ENUM) == 0 && isReference(Type.getType(field.desc))
+          && !field.annotated && !has(resolver.fieldScope(info), SansNullScope.FIELD)) {
+        problems.add(info.className() + "." + field.name + ": field");
+      }
+    }
+    for (var method : info.methods) {
+      if (isIgnored(method.access) || method.name.equals("<clinit>") || isGeneratedEnumMethod(info, method)) {
+        continue;
+      }
+      var scope = resolver.methodScope(info, method);
+      var type = Type.getMethodType(method.desc);
+      if (isReference(type.getReturnType()) && !method.returnAnnotated && !has(scope, SansNullScope.METHOD)) {
+        problems.add(describe(info, method) + ": return value");
+      }
+      var parameters = type.getArgumentTypes();
+      for (int i = 0; i < parameters.length; i++) {
+        if (isReference(parameters[i]) && !method.parametersAnnotated[i] && !has(scope, SansNullScope.PARAMETER)
+            && !info.isImplicitParameter(method, i)) {
+          problems.add(describe(info, method) + ": parameter " + i);
+        }
+      }
+    }
+    return problems;
+  }
+
+  private static boolean isIgnored(@NotNull ClassInfo info) {
+    // Kotlin has its own idea of nullability
+    return (info.access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_MODULE)) != 0
+        || info.annotations.contains("kotlin/Metadata");
+  }
+
+  private static boolean isIgnored(int access) {
+    return (access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) != 0;
+  }
+
+  private static boolean isGeneratedEnumMethod(@NotNull ClassInfo info, @NotNull ClassInfo.Method method) {
+    return (info.access & Opcodes.ACC_ENUM) != 0 && (method.access & Opcodes.ACC_STATIC) != 0
+        && (method.name.equals("values") || method.name.equals("valueOf"));
+  }
+
+  private static boolean isReference(@NotNull Type type) {
+    return type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY;
+  }
+
+  private static boolean has(SansNullScope scope, int flag) {
+    return scope != null && scope.has(flag);
+  }
+
+  @NotNull
+  private static String describe(@NotNull ClassInfo info, @NotNull ClassInfo.Method method) {
+    return info.className() + "." + method.name + Arrays.stream(Type.getArgumentTypes(method.desc))
+        .map(Type::getClassName)
+        .collect(Collectors.joining(", ", "(", ")"));
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.analyzer;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What we need to know about a class file: the hierarchy, the
+ * {@code @SansNull} relevant annotations and which members are explicitly
+ * annotated with a nullability annotation. All names are internal names
+ * ({@code a/b/Outer$Inner}).
+ */
+public final class ClassInfo {
+
+  @NotNull
+  final ClassPath.Root root;
+  @NotNull
+  final String name;
+  final int access;
+  @Nullable
+  final String superName;
+  @NotNull
+  final List<String> interfaces;
+  @Nullable
+  String outerName;
+  boolean local;
+  boolean inner;
+  /**
+   * An explicit {@code @SansNull} on the class.
+   */
+  @Nullable
+  SansNullScope sansNull;
+  @Nullable
+  NullCheck check;
+  /**
+   * The {@code @SansNull.Imply} if this is an annotation type.
+   */
+  @Nullable
+  SansNullScope imply;
+  @Nullable
+  NullCheck implyCheck;
+  /**
+   * Other annotations that may imply {@code @SansNull}.
+   */
+  final List<String> annotations = new ArrayList<>();
+  final List<Method> methods = new ArrayList<>();
+  final List<Field> fields = new ArrayList<>();
+
+  ClassInfo(@NotNull ClassPath.Root root, @NotNull String name, int access, @Nullable String superName,
+            @NotNull List<String> interfaces) {
+    this.root = root;
+    this.name = name;
+    this.access = access;
+    this.superName = superName;
+    this.interfaces = interfaces;
+  }
+
+  @NotNull
+  public String name() {
+    return name;
+  }
+
+  @NotNull
+  public String className() {
+    return Type.getObjectType(name).getClassName();
+  }
+
+  public int access() {
+    return access;
+  }
+
+  @Nullable
+  public String superName() {
+    return superName;
+  }
+
+  @NotNull
+  public List<String> interfaces() {
+    return interfaces;
+  }
+
+  @NotNull
+  public String packageName() {
+    var slash = name.lastIndexOf('/');
+    return slash < 0 ? "" : name.substring(0, slash);
+  }
+
+  /**
+   * Whether this is a local or anonymous class. Their constructors get
+   * the captured variables as additional parameters.
+   */
+  public boolean isLocal() {
+    return local;
+  }
+
+  /**
+   * Whether the compiler added the given parameter: the name of enum
+   * constants, the outer instance of inner classes, and the captured
+   * variables of local and anonymous classes. As these can't be told from
+   * the declared parameters, all constructor parameters of local classes
+   * count as implicit.
+   */
+  public boolean isImplicitParameter(@NotNull Method method, int index) {
+    if (!method.name.equals("<init>")) {
+      return false;
+    }
+    return local || (index == 0 && (inner || (access & Opcodes.ACC_ENUM) != 0));
+  }
+
+  @NotNull
+  public List<Method> methods() {
+    return methods;
+  }
+
+  @NotNull
+  public List<Field> fields() {
+    return fields;
+  }
+
+  @Nullable
+  public Method findMethod(@NotNull String name, @NotNull String desc) {
+    for (var method : methods) {
+      if (method.name.equals(name) && method.desc.equals(desc)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  boolean isTarget() {
+    return root.target;
+  }
+
+  @Override
+  public String toString() {
+    return "ClassInfo[" + name + "]";
+  }
+
+  public static final class Method {
+    @NotNull
+    final String name;
+    @NotNull
+    final String desc;
+    final int access;
+    @Nullable
+    SansNullScope sansNull;
+    @Nullable
+    NullCheck check;
+    final List<String> annotations = new ArrayList<>();
+    boolean returnAnnotated;
+    boolean returnNullable;
+    final boolean[] parametersAnnotated;
+    final boolean[] parametersNullable;
+
+    Method(@NotNull String name, @NotNull String desc, int access) {
+      this.name = name;
+      this.desc = desc;
+      this.access = access;
+      parametersAnnotated = new boolean[Type.getArgumentTypes(desc).length];
+      parametersNullable = new boolean[parametersAnnotated.length];
+    }
+
+    @NotNull
+    public String name() {
+      return name;
+    }
+
+    @NotNull
+    public String desc() {
+      return desc;
+    }
+
+    public int access() {
+      return access;
+    }
+
+    public boolean isReturnAnnotated() {
+      return returnAnnotated;
+    }
+
+    public boolean isParameterAnnotated(int index) {
+      return parametersAnnotated[index];
+    }
+
+    public boolean isReturnNullable() {
+      return returnNullable;
+    }
+
+    public boolean isParameterNullable(int index) {
+      return parametersNullable[index];
+    }
+
+    boolean canOverride() {
+      return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC)) == 0 && !name.startsWith("<");
+    }
+
+    @Override
+    public String toString() {
+      return "Method[" + name + desc + "]";
+    }
+  }
+
+  public static final class Field {
+    @NotNull
+    final String name;
+    @NotNull
+    final String desc;
+    final int access;
+    boolean annotated;
+    boolean nullable;
+
+    Field(@NotNull String name, @NotNull String desc, int access) {
+      this.name = name;
+      this.desc = desc;
+      this.access = access;
+    }
+
+    @NotNull
+    public String name() {
+      return name;
+    }
+
+    @NotNull
+    public String desc() {
+      return desc;
+    }
+
+    public int access() {
+      return access;
+    }
+
+    public boolean isAnnotated() {
+      return annotated;
+    }
+
+    public boolean isNullable() {
+      return nullable;
+    }
+
+    @Override
+    public String toString() {
+      return "Field[" + name + ":" + desc + "]";
+    }
+  }
+}
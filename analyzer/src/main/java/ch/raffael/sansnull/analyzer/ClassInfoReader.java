@@ -0,0 +1,240 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.analyzer;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+import org.objectweb.asm.TypeReference;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads a {@link ClassInfo} from a class file, skipping all code.
+ */
+final class ClassInfoReader extends ClassVisitor {
+
+  static final String SANS_NULL_DESC = "Lch/raffael/sansnull/SansNull;";
+  static final String IMPLY_DESC = "Lch/raffael/sansnull/SansNull$Imply;";
+
+  private static final Set<String> NULLABILITY_NAMES = Set.of("Nullable", "NotNull", "Nonnull", "NonNull", "CheckForNull");
+  private static final Set<String> NULLABLE_NAMES = Set.of("Nullable", "CheckForNull");
+  private static final List<String> IGNORED_PREFIXES = List.of("Ljava/lang/", "Lkotlin/", "Lorg/jetbrains/annotations/");
+
+  @NotNull
+  private final ClassPath.Root root;
+  private ClassInfo info;
+
+  private ClassInfoReader(@NotNull ClassPath.Root root) {
+    super(Opcodes.ASM9);
+    this.root = root;
+  }
+
+  @Nullable
+  static ClassInfo read(@NotNull ClassPath.Root root, byte[] content) {
+    try {
+      var reader = new ClassInfoReader(root);
+      new ClassReader(content).accept(reader, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      return reader.info;
+    }
+    catch (RuntimeException e) {
+      // broken class files are none of our business
+      return null;
+    }
+  }
+
+  @Override
+  public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+    info = new ClassInfo(root, name, access, superName, interfaces == null ? List.of() : List.of(interfaces));
+  }
+
+  @Override
+  public void visitOuterClass(String owner, String name, String descriptor) {
+    info.outerName = owner;
+    if (name != null) {
+      info.local = true;
+    }
+  }
+
+  @Override
+  public void visitInnerClass(String name, String outerName, String innerName, int access) {
+    if (name.equals(info.name)) {
+      if (outerName != null) {
+        info.outerName = outerName;
+        info.inner = (access & Opcodes.ACC_STATIC) == 0;
+      } else {
+        info.local = true;
+      }
+    }
+  }
+
+  @Override
+  public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+    if (SANS_NULL_DESC.equals(descriptor)) {
+      return scopeVisitor((scope, check) -> {
+        info.sansNull = scope;
+        info.check = check;
+      });
+    } else if (IMPLY_DESC.equals(descriptor)) {
+      return scopeVisitor((scope, check) -> {
+        info.imply = scope;
+        info.implyCheck = check;
+      });
+    }
+    addAnnotation(info.annotations, descriptor);
+    return null;
+  }
+
+  @Override
+  public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+    var method = new ClassInfo.Method(name, descriptor, access);
+    info.methods.add(method);
+    return new MethodVisitor(api) {
+      // synthetic parameters (e.g. of inner class constructors) may not be annotatable
+      private final int[] parameterOffset = new int[2];
+
+      @Override
+      public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        if (SANS_NULL_DESC.equals(descriptor)) {
+          return scopeVisitor((scope, check) -> {
+            method.sansNull = scope;
+            method.check = check;
+          });
+        } else if (isNullability(descriptor)) {
+          method.returnAnnotated = true;
+          method.returnNullable |= isNullable(descriptor);
+        } else {
+          addAnnotation(method.annotations, descriptor);
+        }
+        return null;
+      }
+
+      @Override
+      public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+        parameterOffset[visible ? 1 : 0] = Math.max(0, method.parametersAnnotated.length - parameterCount);
+      }
+
+      @Override
+      public AnnotationVisitor visitParameterAnnotation(int parameter, String descriptor, boolean visible) {
+        var index = parameter + parameterOffset[visible ? 1 : 0];
+        if (isNullability(descriptor) && index < method.parametersAnnotated.length) {
+          method.parametersAnnotated[index] = true;
+          method.parametersNullable[index] |= isNullable(descriptor);
+        }
+        return null;
+      }
+
+      @Override
+      public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        if (typePath == null && isNullability(descriptor)) {
+          var ref = new TypeReference(typeRef);
+          if (ref.getSort() == TypeReference.METHOD_RETURN) {
+            method.returnAnnotated = true;
+            method.returnNullable |= isNullable(descriptor);
+          } else if (ref.getSort() == TypeReference.METHOD_FORMAL_PARAMETER
+              && ref.getFormalParameterIndex() < method.parametersAnnotated.length) {
+            method.parametersAnnotated[ref.getFormalParameterIndex()] = true;
+            method.parametersNullable[ref.getFormalParameterIndex()] |= isNullable(descriptor);
+          }
+        }
+        return null;
+      }
+    };
+  }
+
+  @Override
+  public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+    var field = new ClassInfo.Field(name, descriptor, access);
+    info.fields.add(field);
+    return new FieldVisitor(api) {
+      @Override
+      public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        if (isNullability(descriptor)) {
+          field.annotated = true;
+          field.nullable |= isNullable(descriptor);
+        }
+        return null;
+      }
+
+      @Override
+      public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String descriptor, boolean visible) {
+        if (typePath == null && isNullability(descriptor)) {
+          field.annotated = true;
+          field.nullable |= isNullable(descriptor);
+        }
+        return null;
+      }
+    };
+  }
+
+  @NotNull
+  private AnnotationVisitor scopeVisitor(@NotNull BiConsumer<SansNullScope, NullCheck> target) {
+    return new AnnotationVisitor(api) {
+      private SansNullScope scope = SansNullScope.defaults();
+      private NullCheck check = NullCheck.DEFAULT;
+
+      @Override
+      public void visit(String name, Object value) {
+        if (value instanceof Boolean) {
+          scope = scope.with(SansNullScope.flag(name), (Boolean) value);
+        } else {
+          check = check.withValue(name, value);
+        }
+      }
+
+      @Override
+      public void visitEnd() {
+        target.accept(scope, check);
+      }
+    };
+  }
+
+  private static void addAnnotation(@NotNull List<String> annotations, @NotNull String descriptor) {
+    if (descriptor.startsWith("L") && IGNORED_PREFIXES.stream().noneMatch(descriptor::startsWith)) {
+      annotations.add(descriptor.substring(1, descriptor.length() - 1));
+    }
+  }
+
+  private static boolean isNullability(@NotNull String descriptor) {
+    return NULLABILITY_NAMES.contains(simpleName(descriptor));
+  }
+
+  private static boolean isNullable(@NotNull String descriptor) {
+    return NULLABLE_NAMES.contains(simpleName(descriptor));
+  }
+
+  @NotNull
+  private static String simpleName(@NotNull String descriptor) {
+    var start = Math.max(descriptor.lastIndexOf('/'), descriptor.lastIndexOf('$')) + 1;
+    return descriptor.endsWith(";") ? descriptor.substring(start, descriptor.length() - 1) : "";
+  }
+}
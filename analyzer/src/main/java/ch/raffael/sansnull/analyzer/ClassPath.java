@@ -0,0 +1,233 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * All classes of a set of jars and directories. The roots and the class
+ * files within the roots are read in parallel, only the {@link ClassInfo}
+ * is kept, not the class files. If a class is found in several roots, the
+ * targets win, otherwise the order in which the roots were added, so the
+ * result doesn't depend on the order of loading.
+ *
+ * <p> Classes that aren't on the class path are looked up using a
+ * {@link Locator}, by default in the running JDK, so
+ * {@code java.lang.Object} and friends are always known. </p>
+ */
+public final class ClassPath {
+
+  private static final String PACKAGE_INFO = "package-info";
+  private static final String MODULE_INFO = "module-info";
+
+  private final List<Root> roots = new ArrayList<>();
+  private final Map<String, ClassInfo> classes = new ConcurrentHashMap<>();
+  private final Map<String, List<ClassInfo>> packages = new ConcurrentHashMap<>();
+  private final Map<String, Optional<ClassInfo>> locatedClasses = new ConcurrentHashMap<>();
+  private final Root locatorRoot = new Root(Path.of(System.getProperty("java.home")), false, Integer.MAX_VALUE);
+  @NotNull
+  private final Locator locator;
+
+  public ClassPath() {
+    this(ClassPath::findPlatformClass);
+  }
+
+  public ClassPath(@NotNull Locator locator) {
+    this.locator = locator;
+  }
+
+  /**
+   * Add a jar or a directory.
+   *
+   * @param target {@code true} if the classes should be analysed,
+   *               {@code false} if they're only needed for resolving.
+   */
+  @NotNull
+  public ClassPath add(@NotNull Path path, boolean target) {
+    roots.add(new Root(path, target, roots.size()));
+    return this;
+  }
+
+  @NotNull
+  public ClassPath load() throws IOException {
+    try {
+      roots.parallelStream().forEach(this::load);
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return this;
+  }
+
+  @NotNull
+  public Stream<ClassInfo> targets() {
+    return classes.values().stream().filter(ClassInfo::isTarget);
+  }
+
+  @Nullable
+  public ClassInfo find(@NotNull String name) {
+    var info = classes.get(name);
+    if (info != null) {
+      return info;
+    }
+    return locatedClasses.computeIfAbsent(name, n -> {
+      try {
+        var content = locator.find(n);
+        return content == null ? Optional.empty() : Optional.ofNullable(ClassInfoReader.read(locatorRoot, content));
+      }
+      catch (IOException e) {
+        return Optional.empty();
+      }
+    }).orElse(null);
+  }
+
+  /**
+   * Like {@link #find(String)}, but uses the given class file instead of
+   * the locator if the class isn't on the class path, e.g. for classes
+   * that are being loaded.
+   */
+  @Nullable
+  public ClassInfo find(@NotNull String name, byte[] classFile) {
+    var info = classes.get(name);
+    if (info != null) {
+      return info;
+    }
+    return locatedClasses.computeIfAbsent(name, n -> Optional.ofNullable(ClassInfoReader.read(locatorRoot, classFile)))
+        .orElse(null);
+  }
+
+  @NotNull
+  List<ClassInfo> packageInfos(@NotNull String packageName) {
+    var packageInfos = packages.get(packageName);
+    if (packageInfos != null) {
+      return packageInfos;
+    }
+    var located = find(packageName.isEmpty() ? PACKAGE_INFO : packageName + "/" + PACKAGE_INFO);
+    return located == null ? List.of() : List.of(located);
+  }
+
+  private void load(@NotNull Root root) {
+    try {
+      if (Files.isDirectory(root.path)) {
+        try (var files = Files.walk(root.path)) {
+          files.parallel()
+              .filter(f -> f.getFileName().toString().endsWith(".class") && Files.isRegularFile(f))
+              .forEach(f -> add(root, readAllBytes(f)));
+        }
+      } else {
+        try (var zip = new ZipFile(root.path.toFile())) {
+          zip.stream().parallel()
+              .filter(e -> !e.isDirectory() && e.getName().endsWith(".class") && !e.getName().startsWith("META-INF/"))
+              .forEach(e -> {
+                try (var in = zip.getInputStream(e)) {
+                  add(root, in.readAllBytes());
+                }
+                catch (IOException ex) {
+                  throw new UncheckedIOException(ex);
+                }
+              });
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void add(@NotNull Root root, byte[] content) {
+    var info = ClassInfoReader.read(root, content);
+    if (info == null) {
+      return;
+    }
+    if (info.name.equals(MODULE_INFO)) {
+      root.module = info;
+    } else if (info.name.endsWith("/" + PACKAGE_INFO)) {
+      packages.computeIfAbsent(info.packageName(), k -> new CopyOnWriteArrayList<>()).add(info);
+    } else {
+      classes.merge(info.name, info, (present, added) -> added.root.precedes(present.root) ? added : present);
+    }
+  }
+
+  @Nullable
+  private static byte[] findPlatformClass(@NotNull String name) throws IOException {
+    try (var in = ClassLoader.getPlatformClassLoader().getResourceAsStream(name + ".class")) {
+      return in == null ? null : in.readAllBytes();
+    }
+  }
+
+  private static byte[] readAllBytes(@NotNull Path file) {
+    try {
+      return Files.readAllBytes(file);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Finds class files that aren't on the class path, e.g. using a class
+   * loader.
+   */
+  @FunctionalInterface
+  public interface Locator {
+    /**
+     * @param name The internal name of the class.
+     * @return The class file or {@code null} if there's no such class.
+     */
+    @Nullable
+    byte[] find(@NotNull String name) throws IOException;
+  }
+
+  static final class Root {
+    @NotNull
+    final Path path;
+    final boolean target;
+    final int index;
+    @Nullable
+    volatile ClassInfo module;
+
+    Root(@NotNull Path path, boolean target, int index) {
+      this.path = path;
+      this.target = target;
+      this.index = index;
+    }
+
+    boolean precedes(@NotNull Root that) {
+      return target != that.target ? target : index < that.index;
+    }
+  }
+}
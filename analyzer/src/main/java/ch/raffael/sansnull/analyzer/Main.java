@@ -0,0 +1,99 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.analyzer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Command line interface for CI:
+ *
+ * <pre>
+ * sansnull-analyzer [--classpath &lt;path&gt;] &lt;jar or directory&gt;...
+ * </pre>
+ *
+ * <p> Prints all members of the given jars or directories without
+ * nullability, one per line, as they're found. The class path is only
+ * used to resolve super classes, annotations etc. Exits with 1 if
+ * anything was found. </p>
+ */
+public final class Main {
+
+  private Main() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    var classPath = new ClassPath();
+    var targets = 0;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--classpath") || args[i].equals("-cp")) {
+        if (++i >= args.length) {
+          usage();
+        }
+        for (var element : args[i].split(File.pathSeparator)) {
+          if (!element.isEmpty()) {
+            classPath.add(Path.of(element), false);
+          }
+        }
+      } else if (args[i].startsWith("-")) {
+        usage();
+      } else {
+        classPath.add(Path.of(args[i]), true);
+        targets++;
+      }
+    }
+    if (targets == 0) {
+      usage();
+    }
+    var start = System.nanoTime();
+    classPath.load();
+    var analyzer = new Analyzer(new Resolver(classPath));
+    var classes = new LongAdder();
+    var problems = new LongAdder();
+    var out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+    classPath.targets().parallel().forEach(info -> {
+      var found = analyzer.analyze(info);
+      classes.increment();
+      problems.add(found.size());
+      if (!found.isEmpty()) {
+        synchronized (out) {
+          found.forEach(out::println);
+        }
+      }
+    });
+    out.flush();
+    System.err.printf("%d classes analysed, %d members without nullability (%d ms)%n",
+        classes.sum(), problems.sum(), (System.nanoTime() - start) / 1_000_000);
+    System.exit(problems.sum() == 0 ? 0 : 1);
+  }
+
+  private static void usage() {
+    System.err.println("Usage: sansnull-analyzer [--classpath <path>] <jar or directory>...");
+    System.exit(2);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Type;
+
+import java.util.Objects;
+
+/**
+ * The {@code exception()} and {@code message()} of a {@code @SansNull},
+ * i.e. what a runtime null check should throw. The exception is an
+ * internal name.
+ */
+public final class NullCheck {
+
+  public static final NullCheck DEFAULT = new NullCheck("java/lang/NullPointerException", "{} must not be null");
+
+  @NotNull
+  private final String exception;
+  @NotNull
+  private final String message;
+
+  NullCheck(@NotNull String exception, @NotNull String message) {
+    this.exception = exception;
+    this.message = message;
+  }
+
+  @NotNull
+  public String exception() {
+    return exception;
+  }
+
+  @NotNull
+  public String message() {
+    return message;
+  }
+
+  /**
+   * The message for the given element, e.g. "parameter 'foo' of Bar.baz()".
+   */
+  @NotNull
+  public String message(@NotNull String element) {
+    return message.replace("{}", element);
+  }
+
+  @NotNull
+  NullCheck withValue(@NotNull String name, Object value) {
+    if (name.equals("exception") && value instanceof Type) {
+      return new NullCheck(((Type) value).getInternalName(), message);
+    } else if (name.equals("message") && value instanceof String) {
+      return new NullCheck(exception, (String) value);
+    } else {
+      return this;
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    var that = (NullCheck) o;
+    return exception.equals(that.exception) && message.equals(that.message);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(exception, message);
+  }
+
+  @Override
+  public String toString() {
+    return "NullCheck[" + exception + ",'" + message + "']";
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.analyzer;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import ch.raffael.sansnull.scope.ScopeRules;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Resolution of {@code @SansNull} scopes from class files, following the
+ * {@link ScopeRules} shared with the IDEA plugin and the javac plugin.
+ *
+ * <p> Overriding is determined by name and erased descriptor, i.e.
+ * methods overriding a generic method through a bridge method don't
+ * inherit its restrictions. </p>
+ *
+ * <p> The {@link NullCheck} for runtime checks is taken from the same
+ * {@code @SansNull} that determines the declared method scope. </p>
+ *
+ * <p> All results are cached, the resolver is thread-safe. </p>
+ */
+public final class Resolver {
+
+  @NotNull
+  private final ClassPath classPath;
+  private final Map<String, Optional<SansNullScope>> classScopes = new ConcurrentHashMap<>();
+  private final Map<String, Optional<SansNullScope>> packageScopes = new ConcurrentHashMap<>();
+  private final Map<String, Optional<SansNullScope>> impliedScopes = new ConcurrentHashMap<>();
+  private final Map<String, Optional<NullCheck>> classChecks = new ConcurrentHashMap<>();
+  private final Map<String, Optional<NullCheck>> packageChecks = new ConcurrentHashMap<>();
+  private final Map<ClassInfo.Method, Optional<SansNullScope>> declaredMethodScopes = new ConcurrentHashMap<>();
+  private final Map<ClassInfo.Method, Optional<SansNullScope>> superMethodsScopes = new ConcurrentHashMap<>();
+  private final ThreadLocal<Set<ClassInfo.Method>> resolvingSuperMethods = ThreadLocal.withInitial(HashSet::new);
+
+  public Resolver(@NotNull ClassPath classPath) {
+    this.classPath = classPath;
+  }
+
+  @NotNull
+  public ClassPath classPath() {
+    return classPath;
+  }
+
+  @Nullable
+  public SansNullScope methodScope(@NotNull ClassInfo owner, @NotNull ClassInfo.Method method) {
+    return ScopeRules.method(declaredMethodScope(owner, method), () -> superMethodsScope(owner, method));
+  }
+
+  @Nullable
+  public SansNullScope parameterScope(@NotNull ClassInfo owner, @NotNull ClassInfo.Method method) {
+    return methodScope(owner, method);
+  }
+
+  @Nullable
+  public SansNullScope fieldScope(@NotNull ClassInfo owner) {
+    return classScope(owner);
+  }
+
+  @Nullable
+  public SansNullScope declaredMethodScope(@NotNull ClassInfo owner, @NotNull ClassInfo.Method method) {
+    return cached(declaredMethodScopes, method,
+        () -> or(ScopeRules.declared(method.sansNull, implied(method.annotations)), () -> classScope(owner)));
+  }
+
+  @NotNull
+  public SansNullScope superMethodsScope(@NotNull ClassInfo owner, @NotNull ClassInfo.Method method) {
+    var scope = cached(superMethodsScopes, method, () -> resolveSuperMethodsScope(owner, method));
+    return scope == null ? SansNullScope.all() : scope;
+  }
+
+  @Nullable
+  private SansNullScope resolveSuperMethodsScope(@NotNull ClassInfo owner, @NotNull ClassInfo.Method method) {
+    var resolving = resolvingSuperMethods.get();
+    if (!resolving.add(method)) {
+      // a cyclic hierarchy is broken code, we just don't let it block the analysis
+      return null;
+    }
+    try {
+      var scope = SansNullScope.all();
+      for (var superMethod : findSuperMethods(owner, method)) {
+        scope = ScopeRules.inherit(scope, declaredMethodScope(superMethod.getKey(), superMethod.getValue()),
+            () -> superMethodsScope(superMethod.getKey(), superMethod.getValue()));
+        if (scope.isEmpty()) {
+          break;
+        }
+      }
+      return scope;
+    }
+    finally {
+      resolving.remove(method);
+    }
+  }
+
+  /**
+   * Find the methods directly overridden by the given method, i.e. the
+   * first matching method on each path up the hierarchy.
+   */
+  @NotNull
+  public List<Map.Entry<ClassInfo, ClassInfo.Method>> findSuperMethods(@NotNull ClassInfo owner,
+                                                                       @NotNull ClassInfo.Method method) {
+    var superMethods = new ArrayList<Map.Entry<ClassInfo, ClassInfo.Method>>();
+    if (method.canOverride()) {
+      var visited = new HashSet<String>();
+      visited.add(owner.name);
+      findSuperMethods(owner, method, visited, superMethods);
+    }
+    return superMethods;
+  }
+
+  private void findSuperMethods(@NotNull ClassInfo type, @NotNull ClassInfo.Method method, @NotNull Set<String> visited,
+                                @NotNull List<Map.Entry<ClassInfo, ClassInfo.Method>> superMethods) {
+    var superTypes = new ArrayList<String>(type.interfaces.size() + 1);
+    if (type.superName != null) {
+      superTypes.add(type.superName);
+    }
+    superTypes.addAll(type.interfaces);
+    for (var superTypeName : superTypes) {
+      var superType = visited.add(superTypeName) ? classPath.find(superTypeName) : null;
+      if (superType == null) {
+        continue;
+      }
+      var superMethod = superType.findMethod(method.name, method.desc);
+      if (superMethod != null && superMethod.canOverride()) {
+        superMethods.add(Map.entry(superType, superMethod));
+      } else {
+        findSuperMethods(superType, method, visited, superMethods);
+      }
+    }
+  }
+
+  @Nullable
+  public SansNullScope classScope(@NotNull ClassInfo info) {
+    return cached(classScopes, info.name, () -> resolveClassScope(info));
+  }
+
+  @Nullable
+  private SansNullScope resolveClassScope(@NotNull ClassInfo info) {
+    var sansNull = ScopeRules.declared(info.sansNull, implied(info.annotations));
+    if (sansNull != null) {
+      return sansNull;
+    }
+    var outer = info.outerName == null ? null : classPath.find(info.outerName);
+    if (outer != null) {
+      return classScope(outer);
+    }
+    return or(packageScope(info.packageName()), () -> moduleScope(info.root));
+  }
+
+  @NotNull
+  public NullCheck methodCheck(@NotNull ClassInfo owner, @NotNull ClassInfo.Method method) {
+    NullCheck check;
+    if (method.sansNull != null) {
+      check = method.check;
+    } else {
+      check = or(impliedCheck(method.annotations), () -> classCheck(owner));
+    }
+    return check == null ? NullCheck.DEFAULT : check;
+  }
+
+  @Nullable
+  private NullCheck classCheck(@NotNull ClassInfo info) {
+    return cached(classChecks, info.name, () -> {
+      if (info.sansNull != null) {
+        return info.check;
+      }
+      var implied = impliedCheck(info.annotations);
+      if (implied != null) {
+        return implied;
+      }
+      var outer = info.outerName == null ? null : classPath.find(info.outerName);
+      if (outer != null) {
+        return classCheck(outer);
+      }
+      if (packageScope(info.packageName()) != null) {
+        return packageCheck(info.packageName());
+      }
+      var module = info.root.module;
+      if (module == null) {
+        return null;
+      }
+      return module.sansNull != null ? module.check : impliedCheck(module.annotations);
+    });
+  }
+
+  @Nullable
+  private NullCheck packageCheck(@NotNull String packageName) {
+    return cached(packageChecks, packageName, () -> {
+      NullCheck implied = null;
+      for (var packageInfo : classPath.packageInfos(packageName)) {
+        if (packageInfo.sansNull != null) {
+          return packageInfo.check;
+        }
+        implied = or(implied, () -> impliedCheck(packageInfo.annotations));
+      }
+      return implied;
+    });
+  }
+
+  @Nullable
+  private NullCheck impliedCheck(@NotNull List<String> annotations) {
+    // merging doesn't make sense for these, the first one wins
+    for (var annotation : annotations) {
+      var annotationType = classPath.find(annotation);
+      if (annotationType != null && annotationType.imply != null) {
+        return annotationType.implyCheck;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  public SansNullScope packageScope(@NotNull String packageName) {
+    return cached(packageScopes, packageName, () -> {
+      // a package may be declared in several roots, we merge them
+      SansNullScope explicit = null;
+      SansNullScope implied = null;
+      for (var packageInfo : classPath.packageInfos(packageName)) {
+        explicit = ScopeRules.merge(explicit, packageInfo.sansNull);
+        implied = ScopeRules.merge(implied, implied(packageInfo.annotations));
+      }
+      return ScopeRules.declared(explicit, implied);
+    });
+  }
+
+  @Nullable
+  private SansNullScope moduleScope(@NotNull ClassPath.Root root) {
+    var module = root.module;
+    return module == null ? null : ScopeRules.declared(module.sansNull, implied(module.annotations));
+  }
+
+  @Nullable
+  private SansNullScope implied(@NotNull List<String> annotations) {
+    SansNullScope implied = null;
+    for (var annotation : annotations) {
+      implied = ScopeRules.merge(implied, cached(impliedScopes, annotation, () -> {
+        var annotationType = classPath.find(annotation);
+        return annotationType == null ? null : annotationType.imply;
+      }));
+    }
+    return implied;
+  }
+
+  @Nullable
+  private static <K, V> V cached(@NotNull Map<K, Optional<V>> cache, @NotNull K key,
+                                 @NotNull Supplier<@Nullable V> resolver) {
+    var scope = cache.get(key);
+    if (scope == null) {
+      // no computeIfAbsent(), resolving recurses into the same cache
+      scope = Optional.ofNullable(resolver.get());
+      cache.putIfAbsent(key, scope);
+    }
+    return scope.orElse(null);
+  }
+
+  @Nullable
+  private static <T> T or(@Nullable T first, @NotNull Supplier<@Nullable T> second) {
+    return first != null ? first : second.get();
+  }
+}
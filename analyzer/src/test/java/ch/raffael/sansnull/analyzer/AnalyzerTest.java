@@ -0,0 +1,79 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The fixtures have no {@code @SansNull}, everything declared is
+ * annotated. The parameters added by the compiler must not be reported.
+ */
+class AnalyzerTest {
+
+  private static final String FIXTURES = "ch/raffael/sansnull/analyzer/fixtures/";
+
+  private ClassPath classPath;
+  private Analyzer analyzer;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    var location = Path.of(AnalyzerTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    classPath = new ClassPath().add(location, true).load();
+    analyzer = new Analyzer(new Resolver(classPath));
+  }
+
+  @Test
+  void enumConstructor() {
+    assertEquals(List.of(), analyze("Color"));
+  }
+
+  @Test
+  void innerClassConstructor() {
+    assertEquals(List.of(), analyze("Outer$Inner"));
+  }
+
+  @Test
+  void localClassConstructors() {
+    assertEquals(List.of(), analyze("Locals$1Local"));
+    assertEquals(List.of(), analyze("Locals$1"));
+  }
+
+  @Test
+  void declaredParameters() {
+    assertEquals(List.of("ch.raffael.sansnull.analyzer.fixtures.Unannotated.set(java.lang.String): parameter 0"),
+        analyze("Unannotated"));
+  }
+
+  @NotNull
+  private List<String> analyze(@NotNull String className) {
+    return analyzer.analyze(Objects.requireNonNull(classPath.find(FIXTURES + className), className));
+  }
+}
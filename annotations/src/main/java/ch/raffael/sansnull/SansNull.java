@@ -32,11 +32,13 @@ import java.lang.annotation.Target;
  * <p> The {@code @SansNull} annotation implies nullability annotations on
  * methods, fields and parameters within the annotated scope. It can be
  * applied to methods (affects method return value and parameters), classes
- * (affects all methods, fields and inner or nested classes) and packages
- * (affects all classes within that package). </p>
+ * (affects all methods, fields and inner or nested classes), packages
+ * (affects all classes within that package) and modules (affects all
+ * packages within that module). </p>
  *
  * <p> The affected elements can be filtered using the attributes. All
- * elements are enabled by default. </p>
+ * elements except local variables are enabled by default. Type uses (e.g.
+ * the {@code String} in {@code List<String>}) are never affected. </p>
  *
  * <p> Nested {@code @SansNull} annotations override outer annotations, for
  * example:</p>
@@ -44,7 +46,7 @@ import java.lang.annotation.Target;
  * <pre>
  *{@literal @SansNull}
  * class Example {
- *  {@literal @SansNull(parameters=false)}
+ *  {@literal @SansNull(parameter=false)}
  *   void foo(String fooParam) {
  *   }
  *
@@ -60,16 +62,24 @@ import java.lang.annotation.Target;
  */
 @Documented
 @Retention(RetentionPolicy.CLASS)
-@Target({ElementType.PACKAGE, ElementType.TYPE, ElementType.METHOD})
+@Target({ElementType.MODULE, ElementType.PACKAGE, ElementType.TYPE, ElementType.METHOD})
 public @interface SansNull {
   boolean method() default true;
   boolean field() default true;
   boolean parameter() default true;
+  boolean local() default false;
 
-  // TODO (2020-12-02) implement local(), typeUse()
-  // boolean local() default false;
-  // boolean typeUse() default false;
-  // TODO (2020-12-01) add exception(), message()
+  /**
+   * The exception thrown by the null checks inserted by the weaver. It
+   * must have a public constructor taking the message as only argument.
+   */
+  Class<? extends RuntimeException> exception() default NullPointerException.class;
+
+  /**
+   * The message of the exception thrown by the null checks. {@code {}}
+   * will be replaced with a description of the offending element.
+   */
+  String message() default "{} must not be null";
 
   /**
    * <p> Meta annotation to imply {@link SansNull @SansNull} with other
@@ -98,5 +108,8 @@ public @interface SansNull {
     boolean method() default true;
     boolean field() default true;
     boolean parameter() default true;
+    boolean local() default false;
+    Class<? extends RuntimeException> exception() default NullPointerException.class;
+    String message() default "{} must not be null";
   }
 }
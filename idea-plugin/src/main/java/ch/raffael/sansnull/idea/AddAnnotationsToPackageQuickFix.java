@@ -27,24 +27,14 @@ import com.intellij.codeInsight.intention.AddAnnotationPsiFix;
 import com.intellij.codeInsight.intention.HighPriorityAction;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemDescriptor;
-import com.intellij.ide.DataManager;
-import com.intellij.ide.actions.CreatePackageInfoAction;
-import com.intellij.openapi.actionSystem.ActionManager;
-import com.intellij.openapi.actionSystem.AnActionEvent;
-import com.intellij.openapi.actionSystem.Presentation;
 import com.intellij.openapi.project.Project;
-import com.intellij.psi.JavaPsiFacade;
-import com.intellij.psi.PsiAnnotation;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiNameValuePair;
 import com.intellij.psi.PsiPackage;
 import com.intellij.psi.SmartPointerManager;
 import com.intellij.psi.SmartPsiElementPointer;
-import com.intellij.psi.codeStyle.JavaCodeStyleManager;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 
 import java.util.Optional;
 
@@ -86,42 +76,17 @@ class AddAnnotationsToPackageQuickFix implements LocalQuickFix, HighPriorityActi
 
   @Override
   public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
-    var packageInfo = ensurePackageInfoFile();
-    if (packageInfo == null) {
+    var dir = Optional.ofNullable(source.getContainingFile()).map(PsiFile::getContainingDirectory).orElse(null);
+    if (dir == null) {
       return;
     }
-    var packageStatement = packageInfo.getPackageStatement();
-    if (packageStatement == null) {
+    var packageInfo = PackageInfoFiles.findOrCreate(dir);
+    if (packageInfo == null) {
       return;
     }
     if (!FileModificationService.getInstance().preparePsiElementForWrite(packageInfo)) {
       return;
     }
-    PsiAnnotation annotation = JavaPsiFacade.getElementFactory(project).createAnnotationFromText(
-        "@" + annotationFqn, packageStatement.getContext());
-    PsiElement addedAnnotation = packageInfo.addBefore(annotation, packageStatement);
-    JavaCodeStyleManager.getInstance(project).shortenClassReferences(addedAnnotation);
-  }
-
-  @Nullable
-  private PsiJavaFile ensurePackageInfoFile() {
-    var dir = Optional.ofNullable(source.getContainingFile()).map(PsiFile::getContainingDirectory).orElse(null);
-    if (dir == null) {
-      return null;
-    }
-    var packageInfo = dir.findFile(PsiPackage.PACKAGE_INFO_FILE);
-    if (packageInfo == null) {
-      createPackageInfoFile();
-      packageInfo = dir.findFile(PsiPackage.PACKAGE_INFO_FILE);
-    }
-    return packageInfo instanceof PsiJavaFile ? (PsiJavaFile) packageInfo : null;
-  }
-
-  private void createPackageInfoFile() {
-    DataManager.getInstance().getDataContextFromFocusAsync().onSuccess(context -> {
-      AnActionEvent event =
-          new AnActionEvent(null, context, "", new Presentation(), ActionManager.getInstance(), 0);
-      new CreatePackageInfoAction().actionPerformed(event);
-    });
+    PackageInfoFiles.annotate(packageInfo, annotationFqn);
   }
 }
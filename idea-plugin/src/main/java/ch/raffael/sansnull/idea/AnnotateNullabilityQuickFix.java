@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.codeInsight.FileModificationService;
+import com.intellij.codeInsight.NullableNotNullManager;
+import com.intellij.codeInspection.BatchQuickFix;
+import com.intellij.codeInspection.CommonProblemDescriptor;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiModifierListOwner;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Annotates an element as {@code @Nullable} or {@code @NotNull} using the
+ * project's default annotations.
+ *
+ * <p> This is used in batch mode and code cleanup, on the fly the
+ * platform's fixes are used. When applied to many problems at once, the
+ * elements are grouped per file and everything is done in a single command
+ * and write action. The annotation is imported once per file and the
+ * inserted references are shortened in one pass over the range of the
+ * file that has been changed. </p>
+ */
+class AnnotateNullabilityQuickFix implements LocalQuickFix, BatchQuickFix<CommonProblemDescriptor> {
+
+  private final boolean nullable;
+
+  AnnotateNullabilityQuickFix(boolean nullable) {
+    this.nullable = nullable;
+  }
+
+  @Override
+  @NotNull
+  public String getFamilyName() {
+    return nullable ? "Annotate as @Nullable" : "Annotate as @NotNull";
+  }
+
+  @Override
+  public void applyFix(@NotNull Project project, @NotNull ProblemDescriptor descriptor) {
+    var owner = findOwner(descriptor);
+    if (owner != null && owner.getContainingFile() instanceof PsiJavaFile) {
+      annotate((PsiJavaFile) owner.getContainingFile(), List.of(owner));
+    }
+  }
+
+  @Override
+  public void applyFix(@NotNull Project project, @NotNull CommonProblemDescriptor[] descriptors,
+                       @NotNull List<PsiElement> psiElementsToIgnore, @Nullable Runnable refreshViews) {
+    var byFile = new LinkedHashMap<PsiJavaFile, List<PsiModifierListOwner>>();
+    for (var descriptor : descriptors) {
+      var owner = findOwner(descriptor);
+      if (owner != null && owner.getContainingFile() instanceof PsiJavaFile) {
+        byFile.computeIfAbsent((PsiJavaFile) owner.getContainingFile(), f -> new ArrayList<>()).add(owner);
+        psiElementsToIgnore.add(((ProblemDescriptor) descriptor).getPsiElement());
+      }
+    }
+    if (byFile.isEmpty() || !FileModificationService.getInstance().preparePsiElementsForWrite(byFile.keySet())) {
+      return;
+    }
+    WriteCommandAction.writeCommandAction(project, byFile.keySet().toArray(PsiFile.EMPTY_ARRAY))
+        .withName(getFamilyName())
+        .run(() -> byFile.forEach(this::annotate));
+    if (refreshViews != null) {
+      refreshViews.run();
+    }
+  }
+
+  private void annotate(@NotNull PsiJavaFile file, @NotNull List<PsiModifierListOwner> owners) {
+    var project = file.getProject();
+    var manager = NullableNotNullManager.getInstance(project);
+    var annotationFqn = nullable ? manager.getDefaultNullable() : manager.getDefaultNotNull();
+    var codeStyleManager = JavaCodeStyleManager.getInstance(project);
+    var annotationClass = JavaPsiFacade.getInstance(project).findClass(annotationFqn, file.getResolveScope());
+    var imported = annotationClass != null && codeStyleManager.addImport(file, annotationClass);
+    var annotations = new ArrayList<PsiAnnotation>();
+    for (var owner : owners) {
+      var modifiers = owner.getModifierList();
+      if (owner.isValid() && modifiers != null && !modifiers.hasAnnotation(annotationFqn)) {
+        annotations.add(modifiers.addAnnotation(annotationFqn));
+      }
+    }
+    if (imported && !annotations.isEmpty()) {
+      // the offsets are only final after all insertions
+      var start = annotations.stream().mapToInt(a -> a.getTextRange().getStartOffset()).min().getAsInt();
+      var end = annotations.stream().mapToInt(a -> a.getTextRange().getEndOffset()).max().getAsInt();
+      codeStyleManager.shortenClassReferences(file, start, end);
+    }
+  }
+
+  @Nullable
+  private static PsiModifierListOwner findOwner(@NotNull CommonProblemDescriptor descriptor) {
+    if (!(descriptor instanceof ProblemDescriptor)) {
+      return null;
+    }
+    return PsiTreeUtil.getParentOfType(((ProblemDescriptor) descriptor).getPsiElement(),
+        PsiModifierListOwner.class, false);
+  }
+}
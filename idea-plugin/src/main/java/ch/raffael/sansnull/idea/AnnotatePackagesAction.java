@@ -0,0 +1,188 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.analysis.BaseAnalysisAction;
+import com.intellij.codeInsight.FileModificationService;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.GeneratedSourcesFilter;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiPackage;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Annotates all packages in an analysis scope with {@code @SansNull},
+ * creating the {@code package-info.java} files as needed.
+ *
+ * <p> The packages are collected per module in a cancellable background
+ * read action. Generated sources are skipped, and so are packages that
+ * already get a scope from a {@code package-info} in any root the module
+ * sees. Each remaining package gets exactly one {@code package-info.java}:
+ * an existing one if there is one, otherwise a new one in the first
+ * production source root of the scope containing the package. </p>
+ *
+ * <p> The files are then created and annotated in a single command and
+ * write action with a cancellable progress. Cancelling keeps the packages
+ * annotated so far, the whole command can be undone as usual. </p>
+ */
+public class AnnotatePackagesAction extends BaseAnalysisAction {
+
+  private static final String TITLE = "Annotate Packages with @SansNull";
+
+  public AnnotatePackagesAction() {
+    super(TITLE, "Annotate");
+  }
+
+  @Override
+  protected void analyze(@NotNull Project project, @NotNull AnalysisScope scope) {
+    new Task.Backgroundable(project, "Collecting packages", true) {
+      private List<VirtualFile> directories = List.of();
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(true);
+        directories = ReadAction.nonBlocking(() -> findPackageDirectories(project, scope))
+            .inSmartMode(project)
+            .wrapProgress(indicator)
+            .executeSynchronously();
+      }
+
+      @Override
+      public void onSuccess() {
+        annotatePackages(project, directories);
+      }
+    }.queue();
+  }
+
+  @NotNull
+  private static List<VirtualFile> findPackageDirectories(@NotNull Project project, @NotNull AnalysisScope scope) {
+    var fileIndex = ProjectFileIndex.getInstance(project);
+    var fileTypes = FileTypeRegistry.getInstance();
+    var packages = new LinkedHashMap<Pair<Module, String>, Set<VirtualFile>>();
+    var seenDirectories = new HashSet<VirtualFile>();
+    scope.accept(file -> {
+      ProgressManager.checkCanceled();
+      var dir = file.getParent();
+      if (dir == null || seenDirectories.contains(dir)
+          || !fileTypes.isFileOfType(file, JavaFileType.INSTANCE) || !fileIndex.isInSourceContent(file)
+          || GeneratedSourcesFilter.isGeneratedSourceByAnyFilter(file, project)) {
+        return true;
+      }
+      seenDirectories.add(dir);
+      var module = fileIndex.getModuleForFile(dir);
+      var packageName = fileIndex.getPackageNameByDirectory(dir);
+      if (module != null && packageName != null && !packageName.isEmpty()) {
+        packages.computeIfAbsent(Pair.create(module, packageName), k -> new LinkedHashSet<>()).add(dir);
+      }
+      return true;
+    });
+    var facade = JavaPsiFacade.getInstance(project);
+    var directories = new ArrayList<VirtualFile>();
+    packages.forEach((key, dirs) -> {
+      ProgressManager.checkCanceled();
+      var module = key.first;
+      if (SansNullPsi.findPackageSansNull(project, key.second,
+          module.getModuleWithDependenciesAndLibrariesScope(true)) != null) {
+        return;
+      }
+      // a package-info.java anywhere in the module, even outside of the scope, must be reused
+      var psiPackage = facade.findPackage(key.second);
+      var existing = psiPackage == null ? Optional.<VirtualFile>empty()
+                     : Arrays.stream(psiPackage.getDirectories(GlobalSearchScope.moduleScope(module)))
+                         .map(PsiDirectory::getVirtualFile)
+                         .filter(dir -> dir.findChild(PsiPackage.PACKAGE_INFO_FILE) != null)
+                         .findFirst();
+      directories.add(existing
+          .or(() -> dirs.stream().filter(dir -> !fileIndex.isInTestSourceContent(dir)).findFirst())
+          .orElseGet(() -> dirs.iterator().next()));
+    });
+    return directories;
+  }
+
+  private static void annotatePackages(@NotNull Project project, @NotNull List<VirtualFile> directories) {
+    if (directories.isEmpty()) {
+      Messages.showInfoMessage(project, "All packages in scope are already annotated with @SansNull", TITLE);
+      return;
+    }
+    var psiManager = PsiManager.getInstance(project);
+    List<PsiElement> existing = directories.stream()
+        .filter(VirtualFile::isValid)
+        .map(psiManager::findDirectory)
+        .filter(Objects::nonNull)
+        .map(dir -> dir.findFile(PsiPackage.PACKAGE_INFO_FILE))
+        .filter(Objects::nonNull)
+        .collect(Collectors.toCollection(ArrayList::new));
+    if (!FileModificationService.getInstance().preparePsiElementsForWrite(existing)) {
+      return;
+    }
+    CommandProcessor.getInstance().executeCommand(project, () ->
+        ApplicationManagerEx.getApplicationEx().runWriteActionWithCancellableProgressInDispatchThread(
+            TITLE, project, null, indicator -> {
+              indicator.setIndeterminate(false);
+              for (int i = 0; i < directories.size(); i++) {
+                indicator.checkCanceled();
+                indicator.setFraction((double) i / directories.size());
+                var vDir = directories.get(i);
+                var dir = vDir.isValid() ? psiManager.findDirectory(vDir) : null;
+                if (dir == null) {
+                  continue;
+                }
+                indicator.setText2(vDir.getPresentableUrl());
+                var packageInfo = PackageInfoFiles.findOrCreate(dir);
+                if (packageInfo != null) {
+                  PackageInfoFiles.annotate(packageInfo, Names.SansNull.CLASS);
+                }
+              }
+            }),
+        TITLE, null);
+  }
+}
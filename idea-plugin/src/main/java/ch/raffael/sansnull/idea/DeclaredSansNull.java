@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code @SansNull} relevant annotations of an element as found in the
+ * indexes: the explicit {@code @SansNull} scope, if any, and the qualified
+ * names of all other annotations that may imply {@code @SansNull}. For
+ * sources, the latter are candidates, as the indexer can't resolve. Any
+ * candidate that doesn't exist is ignored when resolving implied scopes.
+ */
+final class DeclaredSansNull {
+
+  static final DataExternalizer<DeclaredSansNull> EXTERNALIZER = new DataExternalizer<>() {
+    @Override
+    public void save(@NotNull DataOutput out, DeclaredSansNull value) throws IOException {
+      DataInputOutputUtil.writeINT(out, value.explicit == null ? -1 : value.explicit.flags());
+      DataInputOutputUtil.writeINT(out, value.annotations.size());
+      for (var annotation : value.annotations) {
+        IOUtil.writeUTF(out, annotation);
+      }
+    }
+
+    @Override
+    public DeclaredSansNull read(@NotNull DataInput in) throws IOException {
+      var flags = DataInputOutputUtil.readINT(in);
+      var count = DataInputOutputUtil.readINT(in);
+      var annotations = new ArrayList<String>(count);
+      for (int i = 0; i < count; i++) {
+        annotations.add(IOUtil.readUTF(in));
+      }
+      return new DeclaredSansNull(flags < 0 ? null : SansNullScope.of(flags), annotations);
+    }
+  };
+
+  @Nullable
+  final SansNullScope explicit;
+  @NotNull
+  final List<String> annotations;
+
+  DeclaredSansNull(@Nullable SansNullScope explicit, @NotNull List<String> annotations) {
+    this.explicit = explicit;
+    this.annotations = List.copyOf(annotations);
+  }
+
+  boolean isEmpty() {
+    return explicit == null && annotations.isEmpty();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    var that = (DeclaredSansNull) o;
+    return explicit == that.explicit && annotations.equals(that.annotations);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (explicit == null ? -1 : explicit.flags()) + annotations.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "DeclaredSansNull[" + explicit + "," + annotations + "]";
+  }
+}
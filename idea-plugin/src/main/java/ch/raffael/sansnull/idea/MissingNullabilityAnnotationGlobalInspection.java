@@ -0,0 +1,147 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.analysis.AnalysisScope;
+import com.intellij.codeInspection.GlobalInspectionContext;
+import com.intellij.codeInspection.GlobalInspectionTool;
+import com.intellij.codeInspection.InspectionProfile;
+import com.intellij.codeInspection.InspectionProfileEntry;
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.ProblemDescriptionsProcessor;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.codeInspection.ex.GlobalInspectionContextBase;
+import com.intellij.codeInspection.reference.RefEntity;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Whole project counterpart of {@link MissingNullabilityAnnotationInspection}.
+ * The files are partitioned by package and the packages are checked in
+ * parallel, each file in its own non-blocking read action, so write actions
+ * aren't held up. The local inspection is taken from the inspection
+ * profile, so its options apply. The results are collected and reported at
+ * the end.
+ */
+public class MissingNullabilityAnnotationGlobalInspection extends GlobalInspectionTool {
+
+  private static final String LOCAL_SHORT_NAME =
+      InspectionProfileEntry.getShortName(MissingNullabilityAnnotationInspection.class.getSimpleName());
+
+  @Override
+  public boolean isGraphNeeded() {
+    return false;
+  }
+
+  @Override
+  public boolean isReadActionNeeded() {
+    return false;
+  }
+
+  @Override
+  public void runInspection(@NotNull AnalysisScope scope, @NotNull InspectionManager manager,
+                            @NotNull GlobalInspectionContext globalContext,
+                            @NotNull ProblemDescriptionsProcessor problemDescriptionsProcessor) {
+    var packages = ReadAction.nonBlocking(() -> {
+      var result = new LinkedHashMap<VirtualFile, List<VirtualFile>>();
+      scope.accept(file -> {
+        if (file.getParent() != null && FileTypeRegistry.getInstance().isFileOfType(file, JavaFileType.INSTANCE)) {
+          result.computeIfAbsent(file.getParent(), k -> new ArrayList<>()).add(file);
+        }
+        return true;
+      });
+      return result;
+    }).executeSynchronously();
+    var profile = globalContext instanceof GlobalInspectionContextBase
+                  ? ((GlobalInspectionContextBase) globalContext).getCurrentProfile()
+                  : InspectionProjectProfileManager.getInstance(manager.getProject()).getCurrentProfile();
+    var psiManager = PsiManager.getInstance(manager.getProject());
+    var problems = new ConcurrentHashMap<VirtualFile, ProblemDescriptor[]>();
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(
+        new ArrayList<>(packages.values()),
+        Objects.requireNonNullElseGet(ProgressManager.getInstance().getProgressIndicator(), EmptyProgressIndicator::new),
+        files -> {
+          for (var file : files) {
+            ProgressManager.checkCanceled();
+            // restarted if a write action comes in, so it must not have any side effects
+            var found = ReadAction.nonBlocking(() -> {
+              var psiFile = file.isValid() ? psiManager.findFile(file) : null;
+              return psiFile instanceof PsiJavaFile ? check(manager, profile, psiFile) : ProblemDescriptor.EMPTY_ARRAY;
+            }).executeSynchronously();
+            if (found.length > 0) {
+              problems.put(file, found);
+            }
+          }
+          return true;
+        });
+    var references = ReadAction.nonBlocking(() -> {
+      var result = new LinkedHashMap<RefEntity, ProblemDescriptor[]>();
+      problems.forEach((file, found) -> {
+        var psiFile = file.isValid() ? psiManager.findFile(file) : null;
+        var reference = psiFile == null ? null : globalContext.getRefManager().getReference(psiFile);
+        if (reference != null) {
+          result.put(reference, found);
+        }
+      });
+      return result;
+    }).executeSynchronously();
+    references.forEach(problemDescriptionsProcessor::addProblemElement);
+  }
+
+  @NotNull
+  private ProblemDescriptor[] check(@NotNull InspectionManager manager, @NotNull InspectionProfile profile,
+                                    @NotNull PsiFile file) {
+    var tool = profile.getUnwrappedTool(LOCAL_SHORT_NAME, file);
+    var checker = tool instanceof MissingNullabilityAnnotationInspection
+                  ? (MissingNullabilityAnnotationInspection) tool
+                  : new MissingNullabilityAnnotationInspection();
+    var holder = new ProblemsHolder(manager, file, false);
+    var visitor = checker.buildVisitor(holder, false);
+    if (visitor != PsiElementVisitor.EMPTY_VISITOR) {
+      PsiTreeUtil.processElements(file, element -> {
+        element.accept(visitor);
+        return true;
+      });
+    }
+    return holder.getResultsArray();
+  }
+}
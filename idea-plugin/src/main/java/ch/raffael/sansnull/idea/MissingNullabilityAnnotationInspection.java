@@ -25,12 +25,13 @@ package ch.raffael.sansnull.idea;
 import com.intellij.codeInsight.Nullability;
 import com.intellij.codeInsight.NullableNotNullManager;
 import com.intellij.codeInsight.intention.AddAnnotationPsiFix;
+import com.intellij.codeInspection.CleanupLocalInspectionTool;
 import com.intellij.codeInspection.LocalInspectionTool;
-import com.intellij.codeInspection.LocalInspectionToolSession;
 import com.intellij.codeInspection.LocalQuickFix;
 import com.intellij.codeInspection.ProblemsHolder;
 import com.intellij.openapi.ui.VerticalFlowLayout;
 import com.intellij.psi.JavaDirectoryService;
+import com.intellij.psi.JavaElementVisitor;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementVisitor;
@@ -51,13 +52,14 @@ import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JPanel;
 import java.awt.BorderLayout;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
-public class MissingNullabilityAnnotationInspection extends LocalInspectionTool {
+public class MissingNullabilityAnnotationInspection extends LocalInspectionTool implements CleanupLocalInspectionTool {
 
   // public for serialisation
   public boolean enableAnnotatePackageFix = true;
@@ -101,35 +103,78 @@ public class MissingNullabilityAnnotationInspection extends LocalInspectionTool
 
   @Override
   @NotNull
-  public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly, @NotNull LocalInspectionToolSession session) {
-    return new PsiElementVisitor() {
+  public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+    if (SansNullSettings.getInstance(holder.getProject()).isExcluded(holder.getFile())) {
+      return PsiElementVisitor.EMPTY_VISITOR;
+    }
+    return new JavaElementVisitor() {
+      @Override
+      public void visitMethod(PsiMethod method) {
+        checkElement(holder, method);
+      }
+
       @Override
-      public void visitElement(@NotNull PsiElement element) {
-        if ((element instanceof PsiParameter || element instanceof PsiMethod || element instanceof PsiField)
-            && SansNullPsi.isNullAnnotatable(element)) {
-          var nullability = NullableNotNullManager.getInstance(element.getProject())
-              .findEffectiveNullabilityInfo((PsiModifierListOwner) element);
-          if (nullability == null || nullability.getNullability() == Nullability.UNKNOWN) {
-            holder.registerProblem(
-                Objects.requireNonNullElse(((PsiNameIdentifierOwner) element).getNameIdentifier(), element),
-                "Missing nullability annotation",
-                List.of(
-                    addSansNullQuickFix(element, findPackage(element)),
-                    addSansNullQuickFix(element, findClass(element)),
-                    addSansNullQuickFix(element, findMethod(element)),
-                    enableAnnotateNullableFix
-                        ? Optional.ofNullable(AddAnnotationPsiFix.createAddNullableFix((PsiModifierListOwner) element))
-                        : Optional.<LocalQuickFix>empty(),
-                    enableAnnotateNotNullFix
-                        ? Optional.ofNullable(AddAnnotationPsiFix.createAddNotNullFix((PsiModifierListOwner) element))
-                        : Optional.<LocalQuickFix>empty())
-                    .stream().flatMap(Optional::stream).toArray(LocalQuickFix[]::new));
-          }
-        }
+      public void visitField(PsiField field) {
+        checkElement(holder, field);
+      }
+
+      @Override
+      public void visitParameter(PsiParameter parameter) {
+        checkElement(holder, parameter);
       }
     };
   }
 
+  private void checkElement(@NotNull ProblemsHolder holder, @NotNull PsiModifierListOwner element) {
+    if (!SansNullPsi.isNullAnnotatable(element)) {
+      return;
+    }
+    var psiClass = PsiTreeUtil.getParentOfType(element, PsiClass.class);
+    if (psiClass != null && SansNullPsi.isFullyCovered(psiClass)) {
+      // everything declared in this class gets an inferred @NotNull, nothing to report
+      return;
+    }
+    var nullability = NullableNotNullManager.getInstance(element.getProject()).findEffectiveNullabilityInfo(element);
+    if (nullability == null || nullability.getNullability() == Nullability.UNKNOWN) {
+      var identifier = Objects.requireNonNullElse(((PsiNameIdentifierOwner) element).getNameIdentifier(), element);
+      var fixes = new ArrayList<LocalQuickFix>();
+      if (!holder.isOnTheFly()) {
+        // code cleanup applies the first fix, so the ones touching only this element go first
+        addNullabilityQuickFixes(fixes, element, false);
+      }
+      addSansNullQuickFix(element, findPackage(element)).ifPresent(fixes::add);
+      addSansNullQuickFix(element, findClass(element)).ifPresent(fixes::add);
+      addSansNullQuickFix(element, findMethod(element)).ifPresent(fixes::add);
+      if (holder.isOnTheFly()) {
+        addNullabilityQuickFixes(fixes, element, true);
+      }
+      holder.registerProblem(identifier, "Missing nullability annotation", fixes.toArray(LocalQuickFix.EMPTY_ARRAY));
+    }
+  }
+
+  /**
+   * On the fly, the platform's fixes are used. In batch mode and code
+   * cleanup, {@link AnnotateNullabilityQuickFix} applies all selected
+   * problems in one go.
+   */
+  private void addNullabilityQuickFixes(@NotNull List<LocalQuickFix> fixes, @NotNull PsiModifierListOwner element,
+                                        boolean onTheFly) {
+    if (enableAnnotateNullableFix) {
+      if (onTheFly) {
+        Optional.ofNullable(AddAnnotationPsiFix.createAddNullableFix(element)).ifPresent(fixes::add);
+      } else {
+        fixes.add(new AnnotateNullabilityQuickFix(true));
+      }
+    }
+    if (enableAnnotateNotNullFix) {
+      if (onTheFly) {
+        Optional.ofNullable(AddAnnotationPsiFix.createAddNotNullFix(element)).ifPresent(fixes::add);
+      } else {
+        fixes.add(new AnnotateNullabilityQuickFix(false));
+      }
+    }
+  }
+
   @Nullable
   private PsiClass findClass(PsiElement element) {
     var current = PsiTreeUtil.getParentOfType(element, PsiClass.class, false);
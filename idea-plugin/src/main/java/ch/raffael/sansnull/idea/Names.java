@@ -22,6 +22,8 @@
 
 package ch.raffael.sansnull.idea;
 
+import java.util.List;
+
 public final class Names {
 
     private Names() {
@@ -29,6 +31,16 @@ public final class Names {
 
     public static final class SansNull {
         public static final String CLASS = "ch.raffael.sansnull.SansNull";
+        public static final String IMPLY_CLASS = "ch.raffael.sansnull.SansNull.Imply";
+        public static final String PACKAGE = "ch.raffael.sansnull";
+        public static final String SIMPLE_NAME = "SansNull";
+        public static final String DESCRIPTOR = "Lch/raffael/sansnull/SansNull;";
+
+        public static final String METHOD = "method";
+        public static final String FIELD = "field";
+        public static final String PARAMETER = "parameter";
+        public static final String LOCAL = "local";
+        public static final List<String> ATTRIBUTES = List.of(METHOD, FIELD, PARAMETER, LOCAL);
 
         private SansNull() {
         }
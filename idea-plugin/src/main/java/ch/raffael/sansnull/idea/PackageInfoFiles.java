@@ -0,0 +1,92 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.ide.fileTemplates.FileTemplateManager;
+import com.intellij.ide.fileTemplates.FileTemplateUtil;
+import com.intellij.ide.fileTemplates.JavaTemplateUtil;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiPackage;
+import com.intellij.psi.codeStyle.JavaCodeStyleManager;
+import com.intellij.util.IncorrectOperationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Creates and annotates {@code package-info.java} files. All methods
+ * require a write action.
+ */
+final class PackageInfoFiles {
+
+  private PackageInfoFiles() {
+  }
+
+  @Nullable
+  static PsiJavaFile findOrCreate(@NotNull PsiDirectory dir) {
+    var existing = dir.findFile(PsiPackage.PACKAGE_INFO_FILE);
+    if (existing != null) {
+      return existing instanceof PsiJavaFile ? (PsiJavaFile) existing : null;
+    }
+    var project = dir.getProject();
+    var templateManager = FileTemplateManager.getInstance(project);
+    var properties = templateManager.getDefaultProperties();
+    JavaTemplateUtil.setPackageNameAttribute(properties, dir);
+    try {
+      var created = FileTemplateUtil.createFromTemplate(
+          templateManager.getInternalTemplate(JavaTemplateUtil.INTERNAL_PACKAGE_INFO_TEMPLATE_NAME),
+          PsiPackage.PACKAGE_INFO_FILE, properties, dir);
+      return created instanceof PsiJavaFile ? (PsiJavaFile) created : null;
+    }
+    catch (IncorrectOperationException e) {
+      throw e;
+    }
+    catch (Exception e) {
+      throw new IncorrectOperationException("Cannot create " + PsiPackage.PACKAGE_INFO_FILE + " in " + dir, e);
+    }
+  }
+
+  /**
+   * Adds the given annotation to the package statement, unless it's
+   * already there.
+   *
+   * @return {@code true} if the annotation has been added.
+   */
+  static boolean annotate(@NotNull PsiJavaFile packageInfo, @NotNull String annotationFqn) {
+    var packageStatement = packageInfo.getPackageStatement();
+    if (packageStatement == null) {
+      return false;
+    }
+    var annotations = packageStatement.getAnnotationList();
+    if (annotations != null && annotations.findAnnotation(annotationFqn) != null) {
+      return false;
+    }
+    var project = packageInfo.getProject();
+    var annotation = JavaPsiFacade.getElementFactory(project).createAnnotationFromText(
+        "@" + annotationFqn, packageStatement.getContext());
+    JavaCodeStyleManager.getInstance(project).shortenClassReferences(
+        packageInfo.addBefore(annotation, packageStatement));
+    return true;
+  }
+}
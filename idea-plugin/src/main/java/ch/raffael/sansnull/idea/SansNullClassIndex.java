@@ -0,0 +1,106 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.ide.highlighter.JavaClassFileType;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiJavaModule;
+import com.intellij.psi.PsiPackage;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * Maps JVM class names (e.g. {@code foo.Outer$Inner}) of compiled classes
+ * to their class level {@code @SansNull} relevant annotations. A class
+ * gets an entry if it has an explicit {@code @SansNull} or any other
+ * annotation that may imply it, i.e. any annotation outside
+ * {@code java.lang}, {@code kotlin} and {@code org.jetbrains.annotations}.
+ * As the index is persistent and content based, library jars are scanned
+ * only once.
+ */
+public class SansNullClassIndex extends FileBasedIndexExtension<String, DeclaredSansNull> {
+
+  static final ID<String, DeclaredSansNull> NAME = ID.create("ch.raffael.sansnull.classes");
+
+  @Override
+  @NotNull
+  public ID<String, DeclaredSansNull> getName() {
+    return NAME;
+  }
+
+  @Override
+  @NotNull
+  public DataIndexer<String, DeclaredSansNull, FileContent> getIndexer() {
+    return input -> {
+      var classFile = SansNullClassVisitor.read(input.getContent());
+      if (classFile == null || classFile.declared().isEmpty()) {
+        return Map.of();
+      }
+      return Map.of(classFile.className, classFile.declared());
+    };
+  }
+
+  @Override
+  @NotNull
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  @NotNull
+  public DataExternalizer<DeclaredSansNull> getValueExternalizer() {
+    return DeclaredSansNull.EXTERNALIZER;
+  }
+
+  @Override
+  public int getVersion() {
+    return 4;
+  }
+
+  @Override
+  @NotNull
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(JavaClassFileType.INSTANCE) {
+      @Override
+      public boolean acceptInput(@NotNull VirtualFile file) {
+        var name = file.getNameWithoutExtension();
+        return !PsiPackage.PACKAGE_INFO_CLASS.equals(name) && !PsiJavaModule.MODULE_INFO_CLASS.equals(name);
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.org.objectweb.asm.AnnotationVisitor;
+import org.jetbrains.org.objectweb.asm.ClassReader;
+import org.jetbrains.org.objectweb.asm.ClassVisitor;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.jetbrains.org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the class level {@code @SansNull} relevant annotations from a
+ * class file for indexing.
+ */
+class SansNullClassVisitor extends ClassVisitor {
+
+  // annotations that are very common and surely won't imply @SansNull
+  private static final List<String> IGNORED_ANNOTATIONS = List.of(
+      "Ljava/lang/", "Lkotlin/", "Lorg/jetbrains/annotations/");
+
+  @NotNull
+  String className = "";
+  @NotNull
+  String packageName = "";
+  @Nullable
+  private SansNullScope explicit;
+  private final List<String> annotations = new ArrayList<>();
+
+  private SansNullClassVisitor() {
+    super(Opcodes.API_VERSION);
+  }
+
+  @Nullable
+  static SansNullClassVisitor read(byte[] content) {
+    var visitor = new SansNullClassVisitor();
+    try {
+      new ClassReader(content).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    }
+    catch (RuntimeException e) {
+      // broken class file, nothing to index
+      return null;
+    }
+    return visitor;
+  }
+
+  @Override
+  public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+    className = name.replace('/', '.');
+    var pos = name.lastIndexOf('/');
+    packageName = pos < 0 ? "" : className.substring(0, pos);
+  }
+
+  @Override
+  @Nullable
+  public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+    if (!Names.SansNull.DESCRIPTOR.equals(descriptor)) {
+      if (IGNORED_ANNOTATIONS.stream().noneMatch(descriptor::startsWith)) {
+        annotations.add(Type.getType(descriptor).getClassName().replace('$', '.'));
+      }
+      return null;
+    }
+    explicit = SansNullScope.defaults();
+    return new AnnotationVisitor(Opcodes.API_VERSION) {
+      @Override
+      public void visit(String name, Object value) {
+        if (value instanceof Boolean && explicit != null) {
+          explicit = explicit.with(SansNullScope.flag(name), (Boolean) value);
+        }
+      }
+    };
+  }
+
+  @NotNull
+  DeclaredSansNull declared() {
+    return new DeclaredSansNull(explicit, annotations);
+  }
+}
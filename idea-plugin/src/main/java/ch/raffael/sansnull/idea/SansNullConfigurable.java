@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer;
+import com.intellij.openapi.options.Configurable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.VerticalFlowLayout;
+import com.intellij.psi.PsiManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.BorderFactory;
+import javax.swing.JCheckBox;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import java.awt.BorderLayout;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Settings UI for {@link SansNullSettings}.
+ */
+public class SansNullConfigurable implements Configurable {
+
+  @NotNull
+  private final Project project;
+
+  private final JCheckBox excludeGeneratedSources = new JCheckBox("Exclude generated source roots");
+  private final JTextArea excludedPaths = new JTextArea(4, 40);
+  private final JTextArea excludedPackages = new JTextArea(4, 40);
+  private final JTextArea includedPaths = new JTextArea(4, 40);
+  private final JTextArea includedPackages = new JTextArea(4, 40);
+
+  public SansNullConfigurable(@NotNull Project project) {
+    this.project = project;
+  }
+
+  @Override
+  public String getDisplayName() {
+    return "SansNull";
+  }
+
+  @Override
+  @Nullable
+  public JComponent createComponent() {
+    JPanel main = new JPanel(new VerticalFlowLayout(VerticalFlowLayout.TOP, true, false));
+    JPanel leftAlign = new JPanel(new BorderLayout(0, 0));
+    leftAlign.add(excludeGeneratedSources, BorderLayout.WEST);
+    main.add(leftAlign);
+    main.add(titled("Excluded paths (globs, e.g. **/generated/**)", excludedPaths));
+    main.add(titled("Excluded packages (e.g. com.example.proto.**)", excludedPackages));
+    main.add(titled("Included paths, overriding the excludes", includedPaths));
+    main.add(titled("Included packages, overriding the excludes", includedPackages));
+    return main;
+  }
+
+  private JComponent titled(String title, JTextArea textArea) {
+    JPanel panel = new JPanel(new BorderLayout(0, 0));
+    panel.setBorder(BorderFactory.createTitledBorder(title));
+    panel.add(new JScrollPane(textArea), BorderLayout.CENTER);
+    return panel;
+  }
+
+  @Override
+  public boolean isModified() {
+    return !current().equals(SansNullSettings.getInstance(project).getState());
+  }
+
+  @Override
+  public void apply() {
+    SansNullSettings.getInstance(project).loadState(current());
+    // inferred annotations are cached all over the place
+    PsiManager.getInstance(project).dropPsiCaches();
+    DaemonCodeAnalyzer.getInstance(project).restart();
+  }
+
+  @Override
+  public void reset() {
+    var rules = SansNullSettings.getInstance(project).getState();
+    excludeGeneratedSources.setSelected(rules.excludeGeneratedSources);
+    excludedPaths.setText(String.join("\n", rules.excludedPaths));
+    excludedPackages.setText(String.join("\n", rules.excludedPackages));
+    includedPaths.setText(String.join("\n", rules.includedPaths));
+    includedPackages.setText(String.join("\n", rules.includedPackages));
+  }
+
+  @NotNull
+  private SansNullSettings.Rules current() {
+    var rules = new SansNullSettings.Rules();
+    rules.excludeGeneratedSources = excludeGeneratedSources.isSelected();
+    rules.excludedPaths = lines(excludedPaths);
+    rules.excludedPackages = lines(excludedPackages);
+    rules.includedPaths = lines(includedPaths);
+    rules.includedPackages = lines(includedPackages);
+    return rules;
+  }
+
+  @NotNull
+  private static List<String> lines(@NotNull JTextArea textArea) {
+    return Arrays.stream(textArea.getText().split("\n"))
+        .map(String::trim)
+        .filter(l -> !l.isEmpty())
+        .collect(Collectors.toList());
+  }
+}
@@ -23,8 +23,11 @@
 package ch.raffael.sansnull.idea;
 
 import com.intellij.codeInsight.InferredAnnotationProvider;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.psi.PsiAnnotation;
 import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiLocalVariable;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiModifierListOwner;
 import com.intellij.psi.PsiParameter;
@@ -39,10 +42,10 @@ import static ch.raffael.sansnull.idea.SansNullPsi.defaultNotNull;
 import static ch.raffael.sansnull.idea.SansNullPsi.findSansNull;
 import static ch.raffael.sansnull.idea.SansNullPsi.isNullAnnotatable;
 
-public class SansNullInferredAnnotationProvider implements InferredAnnotationProvider {
+public class SansNullInferredAnnotationProvider implements InferredAnnotationProvider, DumbAware {
 
   private static final List<Class<? extends PsiModifierListOwner>> ROOT_TYPES = List.of(
-      PsiParameter.class, PsiMethod.class, PsiField.class);
+      PsiParameter.class, PsiMethod.class, PsiField.class, PsiLocalVariable.class);
 
   @Override
   @Nullable
@@ -56,7 +59,16 @@ public class SansNullInferredAnnotationProvider implements InferredAnnotationPro
     if (!isNullAnnotatable(listOwner)) {
       return null;
     }
-    return createNotNull(listOwner, findSansNull(listOwner));
+    var start = SansNullMetrics.start();
+    try {
+      if (DumbService.isDumb(listOwner.getProject())) {
+        return createNotNull(listOwner, SansNullSnapshot.getInstance(listOwner.getProject()).findSansNull(listOwner));
+      }
+      return createNotNull(listOwner, findSansNull(listOwner));
+    }
+    finally {
+      SansNullMetrics.time("infer." + SansNullMetrics.kind(listOwner), start);
+    }
   }
 
   @Override
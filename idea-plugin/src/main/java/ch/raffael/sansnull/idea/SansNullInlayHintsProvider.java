@@ -0,0 +1,221 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.codeInsight.AnnotationUtil;
+import com.intellij.codeInsight.NullableNotNullManager;
+import com.intellij.codeInsight.daemon.impl.analysis.JavaModuleGraphUtil;
+import com.intellij.codeInsight.hints.ChangeListener;
+import com.intellij.codeInsight.hints.FactoryInlayHintsCollector;
+import com.intellij.codeInsight.hints.ImmediateConfigurable;
+import com.intellij.codeInsight.hints.InlayHintsCollector;
+import com.intellij.codeInsight.hints.InlayHintsProvider;
+import com.intellij.codeInsight.hints.InlayHintsSink;
+import com.intellij.codeInsight.hints.NoSettings;
+import com.intellij.codeInsight.hints.SettingsKey;
+import com.intellij.lang.Language;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifierListOwner;
+import com.intellij.psi.PsiNameIdentifierOwner;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiVariable;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows where an inferred {@code @NotNull} comes from, i.e. which
+ * parameter, method, class, package or module is annotated.
+ *
+ * <p> The hints of each element are computed from the scopes cached by
+ * {@link SansNullPsi}, the origin of classes is cached per class, so
+ * collecting the hints of a whole file mostly boils down to cache
+ * lookups. </p>
+ */
+public class SansNullInlayHintsProvider implements InlayHintsProvider<NoSettings> {
+
+  private static final SettingsKey<NoSettings> KEY = new SettingsKey<>("ch.raffael.sansnull.origin");
+
+  @Override
+  @NotNull
+  public SettingsKey<NoSettings> getKey() {
+    return KEY;
+  }
+
+  @Override
+  @NotNull
+  public String getName() {
+    return "@SansNull origin";
+  }
+
+  @Override
+  @Nullable
+  public String getPreviewText() {
+    return null;
+  }
+
+  @Override
+  @NotNull
+  public NoSettings createSettings() {
+    return new NoSettings();
+  }
+
+  @Override
+  public boolean isVisibleInSettings() {
+    return true;
+  }
+
+  @Override
+  public boolean isLanguageSupported(@NotNull Language language) {
+    return language.isKindOf(JavaLanguage.INSTANCE);
+  }
+
+  @Override
+  @NotNull
+  public ImmediateConfigurable createConfigurable(@NotNull NoSettings settings) {
+    return new ImmediateConfigurable() {
+      @Override
+      @NotNull
+      public JComponent createComponent(@NotNull ChangeListener listener) {
+        return new JPanel();
+      }
+
+      @Override
+      @NotNull
+      public List<Case> getCases() {
+        return List.of();
+      }
+
+      @Override
+      @NotNull
+      public String getMainCheckboxText() {
+        return "Show hints";
+      }
+
+      public void reset() {
+      }
+    };
+  }
+
+  @Override
+  @Nullable
+  public InlayHintsCollector getCollectorFor(@NotNull PsiFile file, @NotNull Editor editor,
+                                             @NotNull NoSettings settings, @NotNull InlayHintsSink sink) {
+    if (SansNullSettings.getInstance(file.getProject()).isExcluded(file)) {
+      return null;
+    }
+    return new FactoryInlayHintsCollector(editor) {
+      @Override
+      public boolean collect(@NotNull PsiElement element, @NotNull Editor editor, @NotNull InlayHintsSink sink) {
+        if (!(element instanceof PsiMethod || element instanceof PsiVariable)) {
+          return true;
+        }
+        var owner = (PsiModifierListOwner) element;
+        var identifier = ((PsiNameIdentifierOwner) element).getNameIdentifier();
+        if (identifier == null || !SansNullPsi.isNullAnnotatable(owner) || !SansNullPsi.isInferredNotNull(owner)
+            || isExplicitlyAnnotated(owner)) {
+          return true;
+        }
+        var origin = findOrigin(owner);
+        if (origin != null) {
+          sink.addInlineElement(identifier.getTextRange().getStartOffset(), false,
+              getFactory().roundWithBackground(getFactory().smallText("@NotNull by " + origin)));
+        }
+        return true;
+      }
+    };
+  }
+
+  private static boolean isExplicitlyAnnotated(@NotNull PsiModifierListOwner owner) {
+    var manager = NullableNotNullManager.getInstance(owner.getProject());
+    var names = new ArrayList<String>(manager.getNullables());
+    names.addAll(manager.getNotNulls());
+    return AnnotationUtil.findAnnotation(owner, true, names.toArray(String[]::new)) != null;
+  }
+
+  @Nullable
+  private static String findOrigin(@NotNull PsiModifierListOwner owner) {
+    if (owner instanceof PsiParameter && SansNullPsi.getExplicitSansNull(owner) != null) {
+      return "parameter";
+    }
+    var member = PsiTreeUtil.getParentOfType(owner, PsiMember.class, false);
+    if (member instanceof PsiMethod) {
+      return SansNullPsi.getSansNull(member) != null
+             ? "method " + member.getName()
+             : findClassOrigin(member.getContainingClass());
+    } else if (member instanceof PsiClass) {
+      return findClassOrigin((PsiClass) member);
+    } else if (member != null) {
+      return SansNullPsi.getExplicitSansNull(member) != null
+             ? "field " + member.getName()
+             : findClassOrigin(member.getContainingClass());
+    } else {
+      return null;
+    }
+  }
+
+  @Nullable
+  private static String findClassOrigin(@Nullable PsiClass psiClass) {
+    if (psiClass == null) {
+      return null;
+    }
+    return CachedValuesManager.getCachedValue(psiClass, () -> CachedValueProvider.Result.create(
+        resolveClassOrigin(psiClass), PsiModificationTracker.MODIFICATION_COUNT));
+  }
+
+  @Nullable
+  private static String resolveClassOrigin(@NotNull PsiClass psiClass) {
+    if (SansNullPsi.getOwnClassSansNull(psiClass) != null) {
+      return "class " + psiClass.getName();
+    }
+    var outer = PsiTreeUtil.getStubOrPsiParentOfType(psiClass, PsiClass.class);
+    if (outer != null) {
+      return findClassOrigin(outer);
+    }
+    var file = psiClass.getContainingFile();
+    if (!(file instanceof PsiClassOwner)) {
+      return null;
+    }
+    var packageName = ((PsiClassOwner) file).getPackageName();
+    if (SansNullPsi.findPackageSansNull(psiClass.getProject(), packageName, psiClass.getResolveScope()) != null) {
+      return "package " + packageName;
+    }
+    var module = JavaModuleGraphUtil.findDescriptorByElement(psiClass);
+    return module != null && SansNullPsi.findModuleSansNull(module) != null ? "module " + module.getName() : null;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiLocalVariable;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simple counters to find out where the time goes. Disabled by default,
+ * in which case all methods return immediately.
+ *
+ * <p> {@code find.*} counts the lookups of a cached scope,
+ * {@code resolve.*} counts how often it actually had to be resolved, i.e.
+ * the cache misses. </p>
+ *
+ * @see SansNullMetricsActions
+ */
+final class SansNullMetrics {
+
+  private static final List<String> CACHES =
+      List.of("class", "declaredMethod", "superMethods", "package", "implied", "module");
+
+  private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+  private static volatile boolean enabled = false;
+  private static volatile Instant since = Instant.now();
+
+  private SansNullMetrics() {
+  }
+
+  static boolean isEnabled() {
+    return enabled;
+  }
+
+  static void setEnabled(boolean enabled) {
+    if (enabled && !SansNullMetrics.enabled) {
+      reset();
+    }
+    SansNullMetrics.enabled = enabled;
+  }
+
+  static void reset() {
+    COUNTERS.clear();
+    since = Instant.now();
+  }
+
+  static void count(@NotNull String counter) {
+    if (enabled) {
+      COUNTERS.computeIfAbsent(counter, k -> new LongAdder()).increment();
+    }
+  }
+
+  static long start() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  static void time(@NotNull String counter, long start) {
+    if (enabled && start != 0) {
+      var nanos = System.nanoTime() - start;
+      COUNTERS.computeIfAbsent(counter + ".calls", k -> new LongAdder()).increment();
+      COUNTERS.computeIfAbsent(counter + ".nanos", k -> new LongAdder()).add(nanos);
+    }
+  }
+
+  @NotNull
+  static String kind(@Nullable PsiElement element) {
+    if (element instanceof PsiParameter) {
+      return "parameter";
+    } else if (element instanceof PsiMethod) {
+      return "method";
+    } else if (element instanceof PsiField) {
+      return "field";
+    } else if (element instanceof PsiLocalVariable) {
+      return "local";
+    } else {
+      return "other";
+    }
+  }
+
+  @NotNull
+  static String report() {
+    var counters = new TreeMap<String, Long>();
+    COUNTERS.forEach((k, v) -> counters.put(k, v.sum()));
+    var report = new StringBuilder();
+    report.append("SansNull metrics ").append(enabled ? "(enabled)" : "(disabled)")
+        .append(", since ").append(since).append('\n');
+    report.append("\nCounters:\n");
+    counters.forEach((k, v) -> report.append("  ").append(k).append(": ").append(v).append('\n'));
+    report.append("\nCache hit rates:\n");
+    for (var cache : CACHES) {
+      long find = counters.getOrDefault("find." + cache, 0L);
+      long resolve = counters.getOrDefault("resolve." + cache, 0L);
+      if (find > 0) {
+        report.append(String.format("  %s: %.1f%% (%d lookups)%n", cache, 100.0 * (find - resolve) / find, find));
+      }
+    }
+    return report.toString();
+  }
+}
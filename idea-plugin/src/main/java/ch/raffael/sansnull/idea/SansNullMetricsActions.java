@@ -0,0 +1,89 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Actions to switch {@link SansNullMetrics} on and off and to show and
+ * export the current numbers.
+ */
+public final class SansNullMetricsActions {
+
+  private static final String TITLE = "SansNull Metrics";
+
+  private SansNullMetricsActions() {
+  }
+
+  public static class Toggle extends ToggleAction implements DumbAware {
+    @Override
+    public boolean isSelected(@NotNull AnActionEvent e) {
+      return SansNullMetrics.isEnabled();
+    }
+
+    @Override
+    public void setSelected(@NotNull AnActionEvent e, boolean state) {
+      SansNullMetrics.setEnabled(state);
+    }
+  }
+
+  public static class Show extends AnAction implements DumbAware {
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+      var report = SansNullMetrics.report();
+      var choice = Messages.showDialog(e.getProject(), report, TITLE,
+          new String[] {"Export...", "Reset", Messages.getCancelButton()}, 0, Messages.getInformationIcon());
+      if (choice == 0) {
+        export(e, report);
+      } else if (choice == 1) {
+        SansNullMetrics.reset();
+      }
+    }
+
+    private static void export(@NotNull AnActionEvent e, @NotNull String report) {
+      var target = FileChooserFactory.getInstance()
+          .createSaveFileDialog(new FileSaverDescriptor("Export " + TITLE, "", "txt"), e.getProject())
+          .save((VirtualFile) null, "sansnull-metrics.txt");
+      if (target == null) {
+        return;
+      }
+      try {
+        Files.writeString(target.getFile().toPath(), report);
+      }
+      catch (IOException ex) {
+        Messages.showErrorDialog(e.getProject(), "Cannot write " + target.getFile() + ": " + ex, TITLE);
+      }
+    }
+  }
+}
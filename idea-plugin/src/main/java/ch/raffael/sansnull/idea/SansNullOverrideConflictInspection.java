@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.codeInsight.intention.AddAnnotationPsiFix;
+import com.intellij.codeInspection.LocalInspectionTool;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.psi.JavaElementVisitor;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCompiledElement;
+import com.intellij.psi.PsiElementVisitor;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiNameValuePair;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * Reports methods whose inferred {@code @NotNull} annotations are
+ * restricted or disabled, because a super method isn't covered by
+ * {@code @SansNull} in the same way.
+ */
+public class SansNullOverrideConflictInspection extends LocalInspectionTool {
+
+  @Override
+  @NotNull
+  public PsiElementVisitor buildVisitor(@NotNull ProblemsHolder holder, boolean isOnTheFly) {
+    if (SansNullSettings.getInstance(holder.getProject()).isExcluded(holder.getFile())) {
+      return PsiElementVisitor.EMPTY_VISITOR;
+    }
+    return new JavaElementVisitor() {
+      @Override
+      public void visitClass(PsiClass psiClass) {
+        SansNullPsi.findOverrideConflicts(psiClass).forEach((method, superMethods) -> {
+          for (var superMethod : superMethods) {
+            holder.registerProblem(
+                Objects.requireNonNullElse(method.getNameIdentifier(), method),
+                "@SansNull inference restricted by super method " + describe(superMethod),
+                annotateFixes(superMethod));
+          }
+        });
+      }
+    };
+  }
+
+  @NotNull
+  private static String describe(@NotNull PsiMethod method) {
+    var containingClass = method.getContainingClass();
+    return (containingClass == null ? "" : containingClass.getName() + ".") + method.getName() + "()";
+  }
+
+  @NotNull
+  private static LocalQuickFix[] annotateFixes(@NotNull PsiMethod superMethod) {
+    if (superMethod instanceof PsiCompiledElement || !superMethod.isPhysical()
+        || SansNullPsi.getSansNull(superMethod) != null) {
+      return LocalQuickFix.EMPTY_ARRAY;
+    }
+    return new LocalQuickFix[] {new AddAnnotationPsiFix(Names.SansNull.CLASS, superMethod, PsiNameValuePair.EMPTY_ARRAY)};
+  }
+}
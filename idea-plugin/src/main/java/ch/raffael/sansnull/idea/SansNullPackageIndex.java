@@ -0,0 +1,124 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.ide.highlighter.JavaClassFileType;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiPackage;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * Maps package names to the {@code @SansNull} relevant annotations
+ * declared in their {@code package-info.java} or {@code package-info.class}.
+ *
+ * @see SansNullSyntax
+ */
+public class SansNullPackageIndex extends FileBasedIndexExtension<String, DeclaredSansNull> {
+
+  static final ID<String, DeclaredSansNull> NAME = ID.create("ch.raffael.sansnull.packages");
+
+  @Override
+  @NotNull
+  public ID<String, DeclaredSansNull> getName() {
+    return NAME;
+  }
+
+  @Override
+  @NotNull
+  public DataIndexer<String, DeclaredSansNull, FileContent> getIndexer() {
+    return input -> {
+      if (input.getFileType() == JavaClassFileType.INSTANCE) {
+        return indexClassFile(input.getContent());
+      } else if (input.getPsiFile() instanceof PsiJavaFile) {
+        return indexSourceFile((PsiJavaFile) input.getPsiFile());
+      } else {
+        return Map.of();
+      }
+    };
+  }
+
+  @Override
+  @NotNull
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  @NotNull
+  public DataExternalizer<DeclaredSansNull> getValueExternalizer() {
+    return DeclaredSansNull.EXTERNALIZER;
+  }
+
+  @Override
+  public int getVersion() {
+    return 4;
+  }
+
+  @Override
+  @NotNull
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE, JavaClassFileType.INSTANCE) {
+      @Override
+      public boolean acceptInput(@NotNull VirtualFile file) {
+        return PsiPackage.PACKAGE_INFO_CLASS.equals(file.getNameWithoutExtension());
+      }
+    };
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @NotNull
+  private static Map<String, DeclaredSansNull> indexSourceFile(@NotNull PsiJavaFile file) {
+    var packageStatement = file.getPackageStatement();
+    if (packageStatement == null || packageStatement.getAnnotationList() == null) {
+      return Map.of();
+    }
+    var declared = SansNullSyntax.declared(file, packageStatement.getAnnotationList().getAnnotations());
+    return declared.isEmpty() ? Map.of() : Map.of(packageStatement.getPackageName(), declared);
+  }
+
+  @NotNull
+  private static Map<String, DeclaredSansNull> indexClassFile(byte[] content) {
+    var classFile = SansNullClassVisitor.read(content);
+    if (classFile == null || classFile.declared().isEmpty()) {
+      return Map.of();
+    }
+    return Map.of(classFile.packageName, classFile.declared());
+  }
+}
@@ -22,38 +22,62 @@
 
 package ch.raffael.sansnull.idea;
 
+import ch.raffael.sansnull.scope.SansNullScope;
+import ch.raffael.sansnull.scope.ScopeRules;
 import com.intellij.codeInsight.AnnotationUtil;
 import com.intellij.codeInsight.NullableNotNullManager;
-import com.intellij.psi.JavaDirectoryService;
+import com.intellij.codeInsight.daemon.impl.analysis.JavaModuleGraphUtil;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.RecursionManager;
+import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiAnnotation;
 import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiCompiledElement;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementFactory;
 import com.intellij.psi.PsiField;
-import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaModule;
+import com.intellij.psi.PsiLocalVariable;
+import com.intellij.psi.PsiMember;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiModifierListOwner;
-import com.intellij.psi.PsiPackage;
 import com.intellij.psi.PsiParameter;
 import com.intellij.psi.PsiPrimitiveType;
 import com.intellij.psi.PsiType;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.ClassUtil;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.containers.ConcurrentFactoryMap;
+import com.intellij.util.indexing.FileBasedIndex;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Objects;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
 
+/**
+ * Resolution of {@code @SansNull} scopes. Everything in here navigates the
+ * PSI stub-aware and reads annotations from stubs, so resolving the scope of
+ * a referenced element never loads the AST of its file.
+ */
 class SansNullPsi {
 
   private SansNullPsi() {
   }
 
   @Nullable
-  static PsiAnnotation findSansNull(@Nullable PsiModifierListOwner element) {
-    if (element == null) {
+  static SansNullScope findSansNull(@Nullable PsiModifierListOwner element) {
+    if (element == null || SansNullSettings.getInstance(element.getProject()).isExcluded(element)) {
       return null;
     }
     if (element instanceof PsiParameter) {
@@ -62,6 +86,8 @@ class SansNullPsi {
       return findMethodSansNull((PsiMethod) element);
     } else if (element instanceof PsiField) {
       return findFieldSansNull((PsiField) element);
+    } else if (element instanceof PsiLocalVariable) {
+      return findMemberSansNull(element);
     } else if (element instanceof PsiClass) {
       return findClassSansNull((PsiClass) element);
     } else {
@@ -69,78 +95,297 @@ class SansNullPsi {
     }
   }
 
+  /**
+   * Find the declared scope of the innermost member (method, field,
+   * initializer or class) containing the given element. This is the scope
+   * for local variables. It delegates to the cached scopes of methods and
+   * classes. The super method rule doesn't apply here, local variables
+   * aren't part of the method's contract.
+   */
+  @Nullable
+  static SansNullScope findMemberSansNull(@NotNull PsiElement element) {
+    var member = PsiTreeUtil.getParentOfType(element, PsiMember.class, false);
+    if (member instanceof PsiMethod) {
+      return findDeclaredMethodSansNull((PsiMethod) member);
+    } else if (member instanceof PsiClass) {
+      return findClassSansNull((PsiClass) member);
+    } else if (member != null) {
+      return findClassSansNull(member.getContainingClass());
+    } else {
+      return null;
+    }
+  }
+
   @Nullable
-  static PsiAnnotation findParameterSansNull(PsiParameter psiParameter) {
+  static SansNullScope findParameterSansNull(PsiParameter psiParameter) {
     if (psiParameter == null) {
       return null;
     }
-    return or(getSansNull(psiParameter),
-        () -> findMethodSansNull(PsiTreeUtil.getParentOfType(psiParameter, PsiMethod.class)));
+    return or(getExplicitSansNull(psiParameter),
+        () -> findMethodSansNull(PsiTreeUtil.getStubOrPsiParentOfType(psiParameter, PsiMethod.class)));
   }
 
   @Nullable
-  static PsiAnnotation findMethodSansNull(@Nullable PsiMethod psiMethod) {
+  static SansNullScope findMethodSansNull(@Nullable PsiMethod psiMethod) {
     if (psiMethod == null) {
       return null;
     }
-    var sansNull = or(getSansNull(psiMethod),
-        () -> findClassSansNull(PsiTreeUtil.getParentOfType(psiMethod, PsiClass.class)));
-    if (sansNull == null) {
+    // we only infer what's inferred for all overridden methods, too
+    return ScopeRules.method(findDeclaredMethodSansNull(psiMethod), () -> findSuperMethodsSansNull(psiMethod));
+  }
+
+  @Nullable
+  static SansNullScope findDeclaredMethodSansNull(@Nullable PsiMethod psiMethod) {
+    if (psiMethod == null) {
       return null;
     }
-    // now check the overridden methods; if any of them is not affected by SansNull, we won't infer any @NotNull
-    if (Stream.of(psiMethod.findSuperMethods()).map(SansNullPsi::findMethodSansNull).anyMatch(Objects::isNull)) {
-      return null;
+    SansNullMetrics.count("find.declaredMethod");
+    return CachedValuesManager.getCachedValue(psiMethod, () -> {
+      SansNullMetrics.count("resolve.declaredMethod");
+      return CachedValueProvider.Result.create(
+          or(getSansNull(psiMethod),
+              () -> findClassSansNull(PsiTreeUtil.getStubOrPsiParentOfType(psiMethod, PsiClass.class))),
+          PsiModificationTracker.MODIFICATION_COUNT);
+    });
+  }
+
+  @NotNull
+  static SansNullScope findSuperMethodsSansNull(@NotNull PsiMethod psiMethod) {
+    // cached per method, so each method of a hierarchy is resolved only once, no matter how many paths lead to it
+    SansNullMetrics.count("find.superMethods");
+    return CachedValuesManager.getCachedValue(psiMethod, () -> CachedValueProvider.Result.create(
+        resolveSuperMethodsSansNull(psiMethod), PsiModificationTracker.MODIFICATION_COUNT));
+  }
+
+  @NotNull
+  private static SansNullScope resolveSuperMethodsSansNull(@NotNull PsiMethod psiMethod) {
+    SansNullMetrics.count("resolve.superMethods");
+    var scope = SansNullScope.all();
+    for (var superMethod : psiMethod.findSuperMethods()) {
+      SansNullMetrics.count("superMethods.visited");
+      scope = ScopeRules.inherit(scope, findDeclaredMethodSansNull(superMethod), () -> {
+        // a cyclic hierarchy is broken code, we just don't let it block inference
+        var inherited = RecursionManager.doPreventingRecursion(superMethod, true,
+            () -> findSuperMethodsSansNull(superMethod));
+        return inherited == null ? SansNullScope.all() : inherited;
+      });
+      if (scope.isEmpty()) {
+        break;
+      }
+    }
+    return scope;
+  }
+
+  /**
+   * Find the methods of the given class whose inferred scope is narrowed
+   * down by a direct super method, with the super methods responsible.
+   * This is cached per class and only looks at the super methods if the
+   * cached super methods scope says there's a conflict.
+   */
+  @NotNull
+  static Map<PsiMethod, List<PsiMethod>> findOverrideConflicts(@NotNull PsiClass psiClass) {
+    return CachedValuesManager.getCachedValue(psiClass, () -> CachedValueProvider.Result.create(
+        resolveOverrideConflicts(psiClass), PsiModificationTracker.MODIFICATION_COUNT));
+  }
+
+  @NotNull
+  private static Map<PsiMethod, List<PsiMethod>> resolveOverrideConflicts(@NotNull PsiClass psiClass) {
+    var conflicts = new LinkedHashMap<PsiMethod, List<PsiMethod>>();
+    for (var method : psiClass.getMethods()) {
+      var declared = findDeclaredMethodSansNull(method);
+      if (declared == null || declared.isEmpty() || declared.intersect(findSuperMethodsSansNull(method)) == declared) {
+        continue;
+      }
+      var conflicting = new ArrayList<PsiMethod>();
+      for (var superMethod : method.findSuperMethods()) {
+        var superDeclared = findDeclaredMethodSansNull(superMethod);
+        if (superDeclared == null || declared.intersect(superDeclared) != declared) {
+          conflicting.add(superMethod);
+        }
+      }
+      // otherwise, the conflict is further up and will be reported there
+      if (!conflicting.isEmpty()) {
+        conflicts.put(method, conflicting);
+      }
     }
-    return sansNull;
+    return conflicts;
   }
 
   @Nullable
-  static PsiAnnotation findFieldSansNull(@Nullable PsiField psiField) {
+  static SansNullScope findFieldSansNull(@Nullable PsiField psiField) {
     if (psiField == null) {
       return null;
     }
-    return or(getSansNull(psiField),
-        () -> findClassSansNull(PsiTreeUtil.getParentOfType(psiField, PsiClass.class)));
+    return or(getExplicitSansNull(psiField),
+        () -> findClassSansNull(PsiTreeUtil.getStubOrPsiParentOfType(psiField, PsiClass.class)));
   }
 
   @Nullable
-  static PsiAnnotation findClassSansNull(@Nullable PsiClass psiClass) {
+  static SansNullScope findClassSansNull(@Nullable PsiClass psiClass) {
     if (psiClass == null) {
       return null;
     }
-    var notNull = getSansNull(psiClass);
-    if (notNull != null) {
-      return notNull;
+    SansNullMetrics.count("find.class");
+    return CachedValuesManager.getCachedValue(psiClass, () -> CachedValueProvider.Result.create(
+        resolveClassSansNull(psiClass), PsiModificationTracker.MODIFICATION_COUNT));
+  }
+
+  @Nullable
+  private static SansNullScope resolveClassSansNull(@NotNull PsiClass psiClass) {
+    SansNullMetrics.count("resolve.class");
+    var sansNull = getOwnClassSansNull(psiClass);
+    if (sansNull != null) {
+      return sansNull;
     }
-    var outer = PsiTreeUtil.getParentOfType(psiClass, PsiClass.class);
+    var outer = PsiTreeUtil.getStubOrPsiParentOfType(psiClass, PsiClass.class);
     if (outer != null) {
-      notNull = findClassSansNull(outer);
-      if (notNull != null) {
-        return notNull;
-      }
+      SansNullMetrics.count("resolve.class.outer");
+      return findClassSansNull(outer);
     }
-    var psiDir = Optional.ofNullable(psiClass.getContainingFile())
-        .map(PsiFile::getContainingDirectory)
-        .orElse(null);
-    if (psiDir == null) {
+    return findPackageOrModuleSansNull(psiClass);
+  }
+
+  @Nullable
+  static SansNullScope getOwnClassSansNull(@NotNull PsiClass psiClass) {
+    return psiClass instanceof PsiCompiledElement ? getCompiledClassSansNull(psiClass) : getSansNull(psiClass);
+  }
+
+  /**
+   * Find the scope of the package or module of a top level class.
+   */
+  @Nullable
+  static SansNullScope findPackageOrModuleSansNull(@NotNull PsiClass psiClass) {
+    var file = psiClass.getContainingFile();
+    if (!(file instanceof PsiClassOwner)) {
       return null;
     }
-    PsiPackage psiPackage = JavaDirectoryService.getInstance().getPackage(psiDir);
-    if (psiPackage == null) {
+    SansNullMetrics.count("resolve.class.package");
+    var packageName = ((PsiClassOwner) file).getPackageName();
+    return or(
+        findPackageSansNull(psiClass.getProject(), packageName, psiClass.getResolveScope()),
+        () -> {
+          SansNullMetrics.count("resolve.class.module");
+          return findModuleSansNull(JavaModuleGraphUtil.findDescriptorByElement(psiClass));
+        });
+  }
+
+  @Nullable
+  static SansNullScope findModuleSansNull(@Nullable PsiJavaModule psiModule) {
+    if (psiModule == null) {
       return null;
     }
-    return findPackageSansNull(psiPackage);
+    SansNullMetrics.count("find.module");
+    return CachedValuesManager.getCachedValue(psiModule, () -> {
+      SansNullMetrics.count("resolve.module");
+      return CachedValueProvider.Result.create(getSansNull(psiModule), PsiModificationTracker.MODIFICATION_COUNT);
+    });
+  }
+
+  @Nullable
+  static SansNullScope findPackageSansNull(@NotNull Project project, @NotNull String packageName,
+                                           @NotNull GlobalSearchScope searchScope) {
+    // all top level classes of a package ask for the same thing, so resolve each package only once
+    SansNullMetrics.count("find.package");
+    return CachedValuesManager.getManager(project).getCachedValue(project, () -> CachedValueProvider.Result.create(
+        ConcurrentFactoryMap.createMap((Pair<String, GlobalSearchScope> key) ->
+            resolvePackageSansNull(project, key.first, key.second)),
+        PsiModificationTracker.MODIFICATION_COUNT))
+        .get(Pair.create(packageName, searchScope));
   }
 
   @Nullable
-  static PsiAnnotation findPackageSansNull(@NotNull PsiPackage psiPackage) {
-    return getSansNull(psiPackage);
+  private static SansNullScope resolvePackageSansNull(@NotNull Project project, @NotNull String packageName,
+                                                      @NotNull GlobalSearchScope searchScope) {
+    SansNullMetrics.count("resolve.package");
+    // a package may be declared in several roots (sources, libraries), we merge them
+    return resolveDeclared(project,
+        FileBasedIndex.getInstance().getValues(SansNullPackageIndex.NAME, packageName, searchScope));
   }
 
   @Nullable
-  static PsiAnnotation getSansNull(@Nullable PsiModifierListOwner element) {
-    return element == null ? null : AnnotationUtil.findAnnotation(element, Names.SansNull.CLASS);
+  static SansNullScope getCompiledClassSansNull(@NotNull PsiClass psiClass) {
+    var file = psiClass.getContainingFile() == null ? null : psiClass.getContainingFile().getVirtualFile();
+    var dir = file == null ? null : file.getParent();
+    var className = ClassUtil.getJVMClassName(psiClass);
+    if (dir == null || className == null) {
+      return getSansNull(psiClass);
+    }
+    // nested classes live in their own class files, so we look in the whole directory
+    return resolveDeclared(psiClass.getProject(), FileBasedIndex.getInstance().getValues(
+        SansNullClassIndex.NAME, className, GlobalSearchScopesCore.directoryScope(psiClass.getProject(), dir, false)));
+  }
+
+  @Nullable
+  private static SansNullScope resolveDeclared(@NotNull Project project, @NotNull List<DeclaredSansNull> declarations) {
+    SansNullScope explicit = null;
+    SansNullScope implied = null;
+    for (var declared : declarations) {
+      if (declared.explicit != null) {
+        explicit = ScopeRules.merge(explicit, declared.explicit);
+      }
+      for (var annotation : declared.annotations) {
+        implied = ScopeRules.merge(implied, findImpliedSansNull(project, annotation));
+      }
+    }
+    return ScopeRules.declared(explicit, implied);
+  }
+
+  @Nullable
+  static SansNullScope getSansNull(@Nullable PsiModifierListOwner element) {
+    var explicit = getExplicitSansNull(element);
+    if (explicit != null || element == null || element.getModifierList() == null) {
+      return explicit;
+    }
+    SansNullScope implied = null;
+    for (var annotation : element.getModifierList().getAnnotations()) {
+      var annotationFqn = annotation.getQualifiedName();
+      if (annotationFqn != null) {
+        implied = ScopeRules.merge(implied, findImpliedSansNull(element.getProject(), annotationFqn));
+      }
+    }
+    return implied;
+  }
+
+  @Nullable
+  static SansNullScope getExplicitSansNull(@Nullable PsiModifierListOwner element) {
+    var annotation = element == null ? null : AnnotationUtil.findAnnotation(element, Names.SansNull.CLASS);
+    return annotation == null ? null : toScope(annotation);
+  }
+
+  @Nullable
+  static SansNullScope findImpliedSansNull(@NotNull Project project, @NotNull String annotationFqn) {
+    // which annotation types imply what is cached per project, so we resolve each annotation type only once
+    SansNullMetrics.count("find.implied");
+    return CachedValuesManager.getManager(project).getCachedValue(project, () -> CachedValueProvider.Result.create(
+        ConcurrentFactoryMap.createMap((String fqn) -> resolveImpliedSansNull(project, fqn)),
+        PsiModificationTracker.MODIFICATION_COUNT))
+        .get(annotationFqn);
+  }
+
+  @Nullable
+  private static SansNullScope resolveImpliedSansNull(@NotNull Project project, @NotNull String annotationFqn) {
+    SansNullMetrics.count("resolve.implied");
+    if (Names.SansNull.CLASS.equals(annotationFqn) || Names.SansNull.IMPLY_CLASS.equals(annotationFqn)) {
+      return null;
+    }
+    var annotationType = JavaPsiFacade.getInstance(project).findClass(annotationFqn, GlobalSearchScope.allScope(project));
+    if (annotationType == null || !annotationType.isAnnotationType()) {
+      return null;
+    }
+    var imply = AnnotationUtil.findAnnotation(annotationType, Names.SansNull.IMPLY_CLASS);
+    return imply == null ? null : toScope(imply);
+  }
+
+  @NotNull
+  static SansNullScope toScope(@NotNull PsiAnnotation annotation) {
+    var scope = SansNullScope.defaults();
+    for (var attribute : Names.SansNull.ATTRIBUTES) {
+      var value = AnnotationUtil.getBooleanAttributeValue(annotation, attribute);
+      if (value != null) {
+        scope = scope.with(SansNullScope.flag(attribute), value);
+      }
+    }
+    return scope;
   }
 
   static boolean isNullAnnotatable(@Nullable PsiElement element) {
@@ -150,21 +395,91 @@ class SansNullPsi {
       return isNullableType(((PsiMethod) element).getReturnType());
     } else if (element instanceof PsiField) {
       return isNullableType(((PsiField) element).getType());
+    } else if (element instanceof PsiLocalVariable) {
+      return isNullableType(((PsiLocalVariable) element).getType());
     } else {
       return false;
     }
   }
 
+  static boolean isInferredNotNull(@NotNull PsiModifierListOwner element) {
+    var sansNull = findSansNull(element);
+    return sansNull != null && sansNull.has(scopeFlag(element));
+  }
+
+  /**
+   * Check whether all methods, fields and parameters declared directly in
+   * the given class get an inferred {@code @NotNull}. This only consults the
+   * cached class and method scopes (including the super method rule) and
+   * the explicit annotations of fields and parameters, it never walks the
+   * class body. Nested, local and anonymous classes are checked on their
+   * own. The result is cached per class.
+   */
+  static boolean isFullyCovered(@NotNull PsiClass psiClass) {
+    return CachedValuesManager.getCachedValue(psiClass, () -> CachedValueProvider.Result.create(
+        resolveFullyCovered(psiClass), PsiModificationTracker.MODIFICATION_COUNT));
+  }
+
+  private static boolean resolveFullyCovered(@NotNull PsiClass psiClass) {
+    var classScope = findClassSansNull(psiClass);
+    if (classScope == null || !classScope.has(SansNullScope.DEFAULTS)) {
+      return false;
+    }
+    for (var field : psiClass.getFields()) {
+      var explicit = getExplicitSansNull(field);
+      if (explicit != null && !explicit.has(SansNullScope.FIELD)) {
+        return false;
+      }
+    }
+    for (var method : psiClass.getMethods()) {
+      var methodScope = findMethodSansNull(method);
+      if (methodScope == null || !methodScope.has(SansNullScope.METHOD | SansNullScope.PARAMETER)) {
+        return false;
+      }
+      for (var parameter : method.getParameterList().getParameters()) {
+        var explicit = getExplicitSansNull(parameter);
+        if (explicit != null && !explicit.has(SansNullScope.PARAMETER)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
   @Nullable
-  static PsiAnnotation createNotNull(@NotNull PsiModifierListOwner target, @Nullable PsiAnnotation sansNull) {
-    if (sansNull == null) {
+  static PsiAnnotation createNotNull(@NotNull PsiModifierListOwner target, @Nullable SansNullScope sansNull) {
+    if (sansNull == null || !sansNull.has(scopeFlag(target))) {
       return null;
     } else {
-      return PsiElementFactory.getInstance(target.getProject()).createAnnotationFromText(
-          "@" + defaultNotNull(target), target);
+      return syntheticAnnotation(target.getProject(), defaultNotNull(target));
+    }
+  }
+
+  static int scopeFlag(@Nullable PsiElement element) {
+    if (element instanceof PsiParameter) {
+      return SansNullScope.PARAMETER;
+    } else if (element instanceof PsiMethod) {
+      return SansNullScope.METHOD;
+    } else if (element instanceof PsiField) {
+      return SansNullScope.FIELD;
+    } else if (element instanceof PsiLocalVariable) {
+      return SansNullScope.LOCAL;
+    } else {
+      return 0;
     }
   }
 
+  @NotNull
+  static PsiAnnotation syntheticAnnotation(@NotNull Project project, @NotNull String annotationFqn) {
+    // keyed by FQN, so changing the configured not-null annotation simply yields another entry;
+    // rebuilt on root changes, because that's when the annotation class may resolve differently
+    return CachedValuesManager.getManager(project).getCachedValue(project, () -> CachedValueProvider.Result.create(
+        ConcurrentFactoryMap.createMap((String fqn) ->
+            PsiElementFactory.getInstance(project).createAnnotationFromText("@" + fqn, null)),
+        ProjectRootManager.getInstance(project)))
+        .get(annotationFqn);
+  }
+
   @NotNull
   static String defaultNotNull(@NotNull PsiElement context) {
     return NullableNotNullManager.getInstance(context.getProject()).getDefaultNotNull();
@@ -175,7 +490,7 @@ class SansNullPsi {
   }
 
   @Nullable
-  private static PsiAnnotation or(@Nullable PsiAnnotation first, @NotNull Supplier<@Nullable PsiAnnotation> second) {
+  static SansNullScope or(@Nullable SansNullScope first, @NotNull Supplier<@Nullable SansNullScope> second) {
     return first != null ? first : second.get();
   }
 }
@@ -0,0 +1,192 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.GeneratedSourcesFilter;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Project settings: which code is excluded from {@code @SansNull}
+ * processing. Excluded code doesn't get any inferred annotations and
+ * isn't inspected, typically generated code.
+ *
+ * <p> The rules are compiled into a {@link Matcher} once when they change,
+ * the result is cached per file. Includes override excludes. </p>
+ */
+@State(name = "SansNull", storages = @Storage("sansnull.xml"))
+public final class SansNullSettings implements PersistentStateComponent<SansNullSettings.Rules> {
+
+  @NotNull
+  private final Project project;
+  private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
+  @NotNull
+  private volatile Rules rules = new Rules();
+  @NotNull
+  private volatile Matcher matcher = new Matcher(rules);
+
+  public SansNullSettings(@NotNull Project project) {
+    this.project = project;
+  }
+
+  @NotNull
+  static SansNullSettings getInstance(@NotNull Project project) {
+    return project.getService(SansNullSettings.class);
+  }
+
+  @Override
+  @NotNull
+  public Rules getState() {
+    return rules;
+  }
+
+  @Override
+  public void loadState(@NotNull Rules rules) {
+    this.rules = rules;
+    matcher = new Matcher(rules);
+    modificationTracker.incModificationCount();
+  }
+
+  boolean isExcluded(@Nullable PsiElement element) {
+    var file = element == null ? null : element.getContainingFile();
+    if (file == null) {
+      return false;
+    }
+    return CachedValuesManager.getCachedValue(file, () -> CachedValueProvider.Result.create(
+        matcher.isExcluded(file), file, ProjectRootManager.getInstance(project), modificationTracker));
+  }
+
+  public static class Rules {
+    public boolean excludeGeneratedSources = true;
+    public List<String> excludedPaths = new ArrayList<>();
+    public List<String> excludedPackages = new ArrayList<>();
+    public List<String> includedPaths = new ArrayList<>();
+    public List<String> includedPackages = new ArrayList<>();
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      var that = (Rules) o;
+      return excludeGeneratedSources == that.excludeGeneratedSources
+          && excludedPaths.equals(that.excludedPaths)
+          && excludedPackages.equals(that.excludedPackages)
+          && includedPaths.equals(that.includedPaths)
+          && includedPackages.equals(that.includedPackages);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(excludeGeneratedSources, excludedPaths, excludedPackages, includedPaths, includedPackages);
+    }
+  }
+
+  /**
+   * The compiled rules. Path globs match the full path of the file
+   * ({@code **} matches anything, {@code *} anything except {@code /}),
+   * package patterns the package name ({@code **} matches anything,
+   * {@code *} a single name).
+   */
+  private final class Matcher {
+    private final boolean excludeGeneratedSources;
+    @Nullable
+    private final Pattern excludedPaths;
+    @Nullable
+    private final Pattern excludedPackages;
+    @Nullable
+    private final Pattern includedPaths;
+    @Nullable
+    private final Pattern includedPackages;
+
+    private Matcher(@NotNull Rules rules) {
+      excludeGeneratedSources = rules.excludeGeneratedSources;
+      excludedPaths = compile(rules.excludedPaths, '/');
+      excludedPackages = compile(rules.excludedPackages, '.');
+      includedPaths = compile(rules.includedPaths, '/');
+      includedPackages = compile(rules.includedPackages, '.');
+    }
+
+    private boolean isExcluded(@NotNull PsiFile file) {
+      var vFile = file.getOriginalFile().getVirtualFile();
+      var path = vFile == null ? null : vFile.getPath();
+      var packageName = file instanceof PsiClassOwner ? ((PsiClassOwner) file).getPackageName() : null;
+      var excluded = matches(excludedPaths, path) || matches(excludedPackages, packageName)
+          || (excludeGeneratedSources && vFile != null && GeneratedSourcesFilter.isGeneratedSourceByAnyFilter(vFile, project));
+      return excluded && !(matches(includedPaths, path) || matches(includedPackages, packageName));
+    }
+
+    private boolean matches(@Nullable Pattern pattern, @Nullable String string) {
+      return pattern != null && string != null && pattern.matcher(string).matches();
+    }
+
+    @Nullable
+    private Pattern compile(@NotNull List<String> globs, char separator) {
+      var alternatives = globs.stream()
+          .map(String::trim)
+          .filter(g -> !g.isEmpty())
+          .map(g -> toRegex(g, separator))
+          .collect(Collectors.joining("|"));
+      return alternatives.isEmpty() ? null : Pattern.compile(alternatives);
+    }
+
+    @NotNull
+    private String toRegex(@NotNull String glob, char separator) {
+      var regex = new StringBuilder("(?:");
+      for (int i = 0; i < glob.length(); i++) {
+        var c = glob.charAt(i);
+        if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+          regex.append(".*");
+          i++;
+        } else if (c == '*') {
+          regex.append("[^").append(separator).append("]*");
+        } else if (c == '?') {
+          regex.append("[^").append(separator).append("]");
+        } else {
+          regex.append(Pattern.quote(String.valueOf(c)));
+        }
+      }
+      return regex.append(')').toString();
+    }
+  }
+}
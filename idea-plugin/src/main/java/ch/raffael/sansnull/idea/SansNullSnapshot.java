@@ -0,0 +1,229 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassOwner;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiLocalVariable;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifierListOwner;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ch.raffael.sansnull.idea.SansNullPsi.or;
+
+/**
+ * A persistent snapshot of the package and top level class scopes, used to
+ * answer in dumb mode, where we can't resolve anything.
+ *
+ * <p> The snapshot is rebuilt from the project sources when the project is
+ * opened and whenever dumb mode ends. Only top level classes declaring a
+ * scope themselves are recorded, otherwise the package is good enough.
+ * Packages are recorded per module, because a package may be split across
+ * modules. Libraries aren't recorded. Changes made since the last rebuild
+ * are only seen if they're explicit {@code @SansNull} annotations. </p>
+ *
+ * <p> In dumb mode, explicit {@code @SansNull} annotations are recognised
+ * syntactically (see {@link SansNullSyntax}), everything else comes from
+ * the snapshot. Implied annotations on methods and the super method rule
+ * are not considered. </p>
+ */
+@State(name = "SansNullSnapshot", storages = @Storage(StoragePathMacros.CACHE_FILE))
+public final class SansNullSnapshot implements PersistentStateComponent<SansNullSnapshot.SnapshotState>, Disposable {
+
+  @NotNull
+  private final Project project;
+  private final Map<String, SansNullScope> packages = new ConcurrentHashMap<>();
+  private final Map<String, SansNullScope> classes = new ConcurrentHashMap<>();
+
+  public SansNullSnapshot(@NotNull Project project) {
+    this.project = project;
+    project.getMessageBus().connect(this).subscribe(DumbService.DUMB_MODE, new DumbService.DumbModeListener() {
+      @Override
+      public void exitDumbMode() {
+        reconcile();
+      }
+    });
+  }
+
+  @NotNull
+  static SansNullSnapshot getInstance(@NotNull Project project) {
+    return project.getService(SansNullSnapshot.class);
+  }
+
+  @Override
+  public void dispose() {
+  }
+
+  @Override
+  @NotNull
+  public SnapshotState getState() {
+    var state = new SnapshotState();
+    packages.forEach((k, v) -> state.packages.put(k, v.flags()));
+    classes.forEach((k, v) -> state.classes.put(k, v.flags()));
+    return state;
+  }
+
+  @Override
+  public void loadState(@NotNull SnapshotState state) {
+    packages.clear();
+    classes.clear();
+    state.packages.forEach((k, v) -> packages.put(k, SansNullScope.of(v)));
+    state.classes.forEach((k, v) -> classes.put(k, SansNullScope.of(v)));
+  }
+
+  @Nullable
+  SansNullScope findSansNull(@Nullable PsiModifierListOwner element) {
+    // like SansNullPsi.findSansNull()
+    if (element == null || SansNullSettings.getInstance(element.getProject()).isExcluded(element)) {
+      return null;
+    }
+    if (element instanceof PsiParameter) {
+      return or(SansNullSyntax.explicit(element),
+          () -> findSansNull(PsiTreeUtil.getStubOrPsiParentOfType(element, PsiMethod.class)));
+    } else if (element instanceof PsiMethod || element instanceof PsiField) {
+      return or(SansNullSyntax.explicit(element),
+          () -> findClassSansNull(PsiTreeUtil.getStubOrPsiParentOfType(element, PsiClass.class)));
+    } else if (element instanceof PsiLocalVariable) {
+      return findSansNull(PsiTreeUtil.getParentOfType(element, PsiMethod.class, PsiClass.class));
+    } else if (element instanceof PsiClass) {
+      return findClassSansNull((PsiClass) element);
+    } else {
+      return null;
+    }
+  }
+
+  @Nullable
+  private SansNullScope findClassSansNull(@Nullable PsiClass psiClass) {
+    if (psiClass == null) {
+      return null;
+    }
+    var sansNull = SansNullSyntax.explicit(psiClass);
+    if (sansNull != null) {
+      return sansNull;
+    }
+    var outer = PsiTreeUtil.getStubOrPsiParentOfType(psiClass, PsiClass.class);
+    if (outer != null) {
+      return findClassSansNull(outer);
+    }
+    var className = psiClass.getQualifiedName();
+    sansNull = className == null ? null : classes.get(className);
+    if (sansNull != null) {
+      return sansNull;
+    }
+    var file = psiClass.getContainingFile();
+    var vFile = file == null ? null : file.getVirtualFile();
+    if (!(file instanceof PsiClassOwner) || vFile == null) {
+      return null;
+    }
+    var module = ProjectRootManager.getInstance(project).getFileIndex().getModuleForFile(vFile);
+    return packages.get(packageKey(module, ((PsiClassOwner) file).getPackageName()));
+  }
+
+  void reconcile() {
+    ReadAction.nonBlocking(this::collect)
+        .inSmartMode(project)
+        .expireWith(this)
+        .submit(AppExecutorUtil.getAppExecutorService())
+        .onSuccess(this::loadState);
+  }
+
+  @NotNull
+  private SnapshotState collect() {
+    var state = new SnapshotState();
+    var psiManager = PsiManager.getInstance(project);
+    var fileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+    var seenPackages = new HashSet<String>();
+    fileIndex.iterateContent(file -> {
+      ProgressManager.checkCanceled();
+      var psiFile = psiManager.findFile(file);
+      if (!(psiFile instanceof PsiJavaFile)) {
+        return true;
+      }
+      var packageKey = packageKey(fileIndex.getModuleForFile(file), ((PsiJavaFile) psiFile).getPackageName());
+      for (var psiClass : ((PsiJavaFile) psiFile).getClasses()) {
+        var className = psiClass.getQualifiedName();
+        var sansNull = SansNullPsi.getOwnClassSansNull(psiClass);
+        if (className != null && sansNull != null) {
+          state.classes.put(className, sansNull.flags());
+        }
+        if (seenPackages.add(packageKey)) {
+          var packageSansNull = SansNullPsi.findPackageOrModuleSansNull(psiClass);
+          if (packageSansNull != null) {
+            state.packages.put(packageKey, packageSansNull.flags());
+          }
+        }
+      }
+      return true;
+    }, file -> !file.isDirectory() && fileIndex.isInSourceContent(file)
+        && FileTypeRegistry.getInstance().isFileOfType(file, JavaFileType.INSTANCE));
+    return state;
+  }
+
+  @NotNull
+  private static String packageKey(@Nullable Module module, @NotNull String packageName) {
+    return (module == null ? "" : module.getName()) + ":" + packageName;
+  }
+
+  /**
+   * Builds the snapshot when the project is opened, dumb mode may not be
+   * entered at all.
+   */
+  public static final class Startup implements StartupActivity.Background {
+    @Override
+    public void runActivity(@NotNull Project project) {
+      getInstance(project).reconcile();
+    }
+  }
+
+  public static class SnapshotState {
+    public Map<String, Integer> packages = new TreeMap<>();
+    public Map<String, Integer> classes = new TreeMap<>();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiModifierListOwner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recognises {@code @SansNull} and other annotations on syntax only, i.e.
+ * using the qualified name as written, the imports and literal attribute
+ * values. This is what we can do while indexing, where resolving isn't
+ * allowed.
+ */
+final class SansNullSyntax {
+
+  private SansNullSyntax() {
+  }
+
+  @NotNull
+  static DeclaredSansNull declared(@NotNull PsiJavaFile file, @NotNull PsiAnnotation[] annotations) {
+    SansNullScope explicit = null;
+    var others = new ArrayList<String>();
+    for (var annotation : annotations) {
+      var candidates = candidates(file, annotation);
+      if (candidates.contains(Names.SansNull.CLASS)) {
+        explicit = literalScope(annotation);
+      } else {
+        others.addAll(candidates);
+      }
+    }
+    return new DeclaredSansNull(explicit, others);
+  }
+
+  /**
+   * The explicit {@code @SansNull} of the given element, syntax only.
+   */
+  @Nullable
+  static SansNullScope explicit(@Nullable PsiModifierListOwner element) {
+    var file = element == null ? null : element.getContainingFile();
+    var modifiers = element == null ? null : element.getModifierList();
+    if (!(file instanceof PsiJavaFile) || modifiers == null) {
+      return null;
+    }
+    for (var annotation : modifiers.getAnnotations()) {
+      if (candidates((PsiJavaFile) file, annotation).contains(Names.SansNull.CLASS)) {
+        return literalScope(annotation);
+      }
+    }
+    return null;
+  }
+
+  @NotNull
+  static List<String> candidates(@NotNull PsiJavaFile file, @NotNull PsiAnnotation annotation) {
+    var ref = annotation.getNameReferenceElement();
+    if (ref == null) {
+      return List.of();
+    }
+    var name = ref.getText();
+    var dot = name.indexOf('.');
+    var first = dot < 0 ? name : name.substring(0, dot);
+    var rest = dot < 0 ? "" : name.substring(dot);
+    var imports = file.getImportList();
+    if (imports != null) {
+      for (var importStatement : imports.getImportStatements()) {
+        var importRef = importStatement.getImportReference();
+        if (importRef != null && !importStatement.isOnDemand()
+            && (importRef.getText().equals(first) || importRef.getText().endsWith("." + first))) {
+          return List.of(importRef.getText() + rest);
+        }
+      }
+    }
+    var candidates = new ArrayList<String>();
+    if (dot > 0) {
+      candidates.add(name);
+    }
+    candidates.add(file.getPackageName().isEmpty() ? name : file.getPackageName() + "." + name);
+    if (imports != null) {
+      for (var importStatement : imports.getImportStatements()) {
+        var importRef = importStatement.getImportReference();
+        if (importRef != null && importStatement.isOnDemand()) {
+          candidates.add(importRef.getText() + "." + name);
+        }
+      }
+    }
+    return candidates;
+  }
+
+  @NotNull
+  static SansNullScope literalScope(@NotNull PsiAnnotation annotation) {
+    var scope = SansNullScope.defaults();
+    for (var attribute : annotation.getParameterList().getAttributes()) {
+      // only literals, we can't resolve constants here; anything else keeps the default
+      var value = attribute.getValue();
+      if (attribute.getName() != null && value instanceof PsiLiteralExpression
+          && ((PsiLiteralExpression) value).getValue() instanceof Boolean) {
+        scope = scope.with(SansNullScope.flag(attribute.getName()),
+            (Boolean) ((PsiLiteralExpression) value).getValue());
+      }
+    }
+    return scope;
+  }
+}
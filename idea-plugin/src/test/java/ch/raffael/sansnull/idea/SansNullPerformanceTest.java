@@ -0,0 +1,179 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.idea;
+
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.ProblemsHolder;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.roots.ContentEntry;
+import com.intellij.openapi.roots.ModifiableRootModel;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiModifierListOwner;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.PlatformTestUtil;
+import com.intellij.testFramework.PsiTestUtil;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+import com.intellij.testFramework.fixtures.DefaultLightProjectDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Performance regression tests running on the output of the
+ * {@code generatePerfProject} task. The budgets are meant for the default
+ * size of the generated project and are scaled to the speed of the machine
+ * by {@link PlatformTestUtil}. All caches are dropped before each attempt,
+ * so they measure cold resolution.
+ */
+public class SansNullPerformanceTest extends BasePlatformTestCase {
+
+  private static final String PERF_PROJECT = "sansnull.perfProject";
+
+  private static final int INFERENCE_BUDGET_MS = 3000;
+  private static final int HIGHLIGHTING_BUDGET_MS = 1000;
+  private static final int INSPECTION_BUDGET_MS = 8000;
+
+  private static final LightProjectDescriptor PROJECT_DESCRIPTOR = new DefaultLightProjectDescriptor() {
+    @Override
+    public void configureModule(@NotNull Module module, @NotNull ModifiableRootModel model,
+                                @NotNull ContentEntry contentEntry) {
+      super.configureModule(module, model, contentEntry);
+      // the annotations copied to lib by generatePerfProject
+      var lib = new File(perfProjectPath(), "lib");
+      PsiTestUtil.addLibrary(model, "lib", lib.getPath(),
+          Objects.requireNonNull(lib.list((dir, name) -> name.endsWith(".jar"))));
+    }
+  };
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myFixture.copyDirectoryToProject("src", "");
+  }
+
+  @Override
+  @NotNull
+  protected String getTestDataPath() {
+    return perfProjectPath();
+  }
+
+  @Override
+  @NotNull
+  protected LightProjectDescriptor getProjectDescriptor() {
+    return PROJECT_DESCRIPTOR;
+  }
+
+  public void testFindInferredAnnotation() {
+    var owners = new ArrayList<PsiModifierListOwner>();
+    for (var file : javaFiles()) {
+      owners.addAll(PsiTreeUtil.findChildrenOfType(file, PsiModifierListOwner.class));
+    }
+    var provider = new SansNullInferredAnnotationProvider();
+    var notNull = SansNullPsi.defaultNotNull(owners.get(0));
+    PlatformTestUtil.startPerformanceTest("findInferredAnnotation", INFERENCE_BUDGET_MS, () -> {
+      for (var owner : owners) {
+        provider.findInferredAnnotation(owner, notNull);
+      }
+    })
+        .setup(this::dropCaches)
+        .attempts(3)
+        .assertTiming();
+  }
+
+  public void testHighlighting() {
+    myFixture.enableInspections(MissingNullabilityAnnotationInspection.class, SansNullOverrideConflictInspection.class);
+    var deepest = javaFiles().stream()
+        .map(PsiJavaFile.class::cast)
+        .filter(f -> f.getPackageName().equals("perf.p0"))
+        .max(Comparator.comparingInt(f -> hierarchyDepth(f.getClasses()[0])))
+        .orElseThrow();
+    myFixture.configureFromExistingVirtualFile(deepest.getVirtualFile());
+    PlatformTestUtil.startPerformanceTest("highlighting", HIGHLIGHTING_BUDGET_MS, myFixture::doHighlighting)
+        .setup(this::dropCaches)
+        .attempts(3)
+        .assertTiming();
+  }
+
+  public void testInspection() {
+    var files = javaFiles();
+    var tool = new MissingNullabilityAnnotationInspection();
+    var inspectionManager = InspectionManager.getInstance(getProject());
+    PlatformTestUtil.startPerformanceTest("inspection", INSPECTION_BUDGET_MS, () -> {
+      for (var file : files) {
+        var holder = new ProblemsHolder(inspectionManager, file, false);
+        var visitor = tool.buildVisitor(holder, false);
+        file.accept(new PsiRecursiveElementWalkingVisitor() {
+          @Override
+          public void visitElement(@NotNull PsiElement element) {
+            element.accept(visitor);
+            super.visitElement(element);
+          }
+        });
+      }
+    })
+        .setup(this::dropCaches)
+        .attempts(3)
+        .assertTiming();
+  }
+
+  @NotNull
+  private List<PsiFile> javaFiles() {
+    var psiManager = PsiManager.getInstance(getProject());
+    var files = new ArrayList<PsiFile>();
+    for (var vFile : FileTypeIndex.getFiles(JavaFileType.INSTANCE, GlobalSearchScope.projectScope(getProject()))) {
+      files.add(Objects.requireNonNull(psiManager.findFile(vFile)));
+    }
+    assertFalse("No sources in " + perfProjectPath() + ", run generatePerfProject first", files.isEmpty());
+    return files;
+  }
+
+  private void dropCaches() {
+    PsiManager.getInstance(getProject()).dropPsiCaches();
+  }
+
+  private static int hierarchyDepth(@NotNull PsiClass psiClass) {
+    var depth = 0;
+    for (var c = psiClass.getSuperClass(); c != null; c = c.getSuperClass()) {
+      depth++;
+    }
+    return depth;
+  }
+
+  @NotNull
+  private static String perfProjectPath() {
+    return Objects.requireNonNull(System.getProperty(PERF_PROJECT), PERF_PROJECT + " not set");
+  }
+}
@@ -0,0 +1,14 @@
+package test.implied;
+
+import ch.raffael.sansnull.SansNull;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@SansNull.Imply
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface ImpliedSansNull {
+}
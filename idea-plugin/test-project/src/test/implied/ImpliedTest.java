@@ -0,0 +1,9 @@
+package test.implied;
+
+@ImpliedSansNull
+public class ImpliedTest {
+
+    public String foo(String bar) { // EXPECTATION: inferred @NotNull on method and param
+        return null; // EXPECTATION: warning about returning null
+    }
+}
@@ -0,0 +1,17 @@
+package test.with;
+
+import ch.raffael.sansnull.SansNull;
+
+@SansNull(field = false)
+public class Attributes {
+
+    private Object field; // EXPECTATION: warning about missing nullability annotation
+
+    @SansNull(parameter = false)
+    public String foo(String fooParam) { // EXPECTATION: inferred @NotNull on method, missing nullability annotation on fooParam
+        return "foo";
+    }
+
+    public void bar(String barParam) { // EXPECTATION: inferred @NotNull on barParam
+    }
+}
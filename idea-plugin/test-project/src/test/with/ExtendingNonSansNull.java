@@ -13,7 +13,7 @@ public class ExtendingNonSansNull extends TestWithout implements SansNulIface {
     }
 
     @Override
-    public void nonAnnotated(String notNull) { // EXPECTATION: no inferred @NotNull (overridden from non-SansNull)
+    public void nonAnnotated(String notNull) { // EXPECTATION: no inferred @NotNull (overridden from non-SansNull), weak warning about restricted @SansNull
         super.nonAnnotated(notNull);
     }
 
@@ -0,0 +1,15 @@
+package test.with;
+
+import ch.raffael.sansnull.SansNull;
+
+public class Locals {
+
+    @SansNull(local = true)
+    public void withLocals() {
+        String local = null; // EXPECTATION: warning about assigning null to @NotNull
+    }
+
+    public void withoutLocals() {
+        String local = null; // EXPECTATION: no warnings
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.javac;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.ConditionalExpressionTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeKind;
+import javax.tools.Diagnostic;
+import java.util.List;
+
+/**
+ * Scans a class for null values flowing into elements with an implied
+ * {@code @NotNull}. This is intentionally shallow: only {@code null}
+ * literals and values of elements annotated as nullable are reported,
+ * there's no data flow analysis.
+ */
+final class NullChecker extends TreePathScanner<Void, Void> {
+
+  @NotNull
+  private final Trees trees;
+  @NotNull
+  private final ScopeResolver resolver;
+  @NotNull
+  private final Diagnostic.Kind kind;
+  @Nullable
+  private ExecutableElement currentMethod = null;
+
+  NullChecker(@NotNull Trees trees, @NotNull ScopeResolver resolver, @NotNull Diagnostic.Kind kind) {
+    this.trees = trees;
+    this.resolver = resolver;
+    this.kind = kind;
+  }
+
+  @Override
+  public Void visitClass(ClassTree node, Void unused) {
+    var outer = currentMethod;
+    currentMethod = null;
+    try {
+      return super.visitClass(node, unused);
+    }
+    finally {
+      currentMethod = outer;
+    }
+  }
+
+  @Override
+  public Void visitMethod(MethodTree node, Void unused) {
+    var outer = currentMethod;
+    currentMethod = (ExecutableElement) trees.getElement(getCurrentPath());
+    try {
+      return super.visitMethod(node, unused);
+    }
+    finally {
+      currentMethod = outer;
+    }
+  }
+
+  @Override
+  public Void visitLambdaExpression(LambdaExpressionTree node, Void unused) {
+    // returns in a lambda don't return from the enclosing method
+    var outer = currentMethod;
+    currentMethod = null;
+    try {
+      return super.visitLambdaExpression(node, unused);
+    }
+    finally {
+      currentMethod = outer;
+    }
+  }
+
+  @Override
+  public Void visitReturn(ReturnTree node, Void unused) {
+    if (currentMethod != null && node.getExpression() != null) {
+      check(node.getExpression(), currentMethod, "returned from");
+    }
+    return super.visitReturn(node, unused);
+  }
+
+  @Override
+  public Void visitVariable(VariableTree node, Void unused) {
+    if (node.getInitializer() != null) {
+      check(node.getInitializer(), trees.getElement(getCurrentPath()), "assigned to");
+    }
+    return super.visitVariable(node, unused);
+  }
+
+  @Override
+  public Void visitAssignment(AssignmentTree node, Void unused) {
+    check(node.getExpression(), element(node.getVariable()), "assigned to");
+    return super.visitAssignment(node, unused);
+  }
+
+  @Override
+  public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+    checkArguments(element(node.getMethodSelect()), node.getArguments());
+    return super.visitMethodInvocation(node, unused);
+  }
+
+  @Override
+  public Void visitNewClass(NewClassTree node, Void unused) {
+    checkArguments(trees.getElement(getCurrentPath()), node.getArguments());
+    return super.visitNewClass(node, unused);
+  }
+
+  private void checkArguments(@Nullable Element method, @NotNull List<? extends ExpressionTree> arguments) {
+    if (!(method instanceof ExecutableElement)) {
+      return;
+    }
+    var parameters = ((ExecutableElement) method).getParameters();
+    var count = Math.min(arguments.size(), parameters.size());
+    if (((ExecutableElement) method).isVarArgs() && arguments.size() != parameters.size()) {
+      // the varargs elements themselves aren't covered, only the array
+      count = parameters.size() - 1;
+    }
+    for (int i = 0; i < count; i++) {
+      check(arguments.get(i), parameters.get(i), "passed to");
+    }
+  }
+
+  private void check(@NotNull ExpressionTree expression, @Nullable Element target, @NotNull String verb) {
+    if (target == null || !isImpliedNotNull(target) || !mayBeNull(expression)) {
+      return;
+    }
+    trees.printMessage(kind, "Possibly null value " + verb + " @SansNull " + describe(target),
+        expression, getCurrentPath().getCompilationUnit());
+  }
+
+  private boolean isImpliedNotNull(@NotNull Element element) {
+    var type = element.getKind() == ElementKind.METHOD
+               ? ((ExecutableElement) element).getReturnType()
+               : element.asType();
+    if (type.getKind().isPrimitive() || type.getKind() == TypeKind.VOID || isNullable(element)) {
+      return false;
+    }
+    var scope = resolver.scopeOf(element);
+    if (scope == null) {
+      return false;
+    }
+    switch (element.getKind()) {
+      case METHOD:
+        return scope.has(SansNullScope.METHOD);
+      case PARAMETER:
+        return scope.has(SansNullScope.PARAMETER);
+      case FIELD:
+        return scope.has(SansNullScope.FIELD);
+      case LOCAL_VARIABLE:
+      case RESOURCE_VARIABLE:
+        return scope.has(SansNullScope.LOCAL);
+      default:
+        return false;
+    }
+  }
+
+  private boolean mayBeNull(@NotNull ExpressionTree expression) {
+    switch (expression.getKind()) {
+      case NULL_LITERAL:
+        return true;
+      case PARENTHESIZED:
+        return mayBeNull(((ParenthesizedTree) expression).getExpression());
+      case TYPE_CAST:
+        return mayBeNull(((TypeCastTree) expression).getExpression());
+      case CONDITIONAL_EXPRESSION:
+        var conditional = (ConditionalExpressionTree) expression;
+        return mayBeNull(conditional.getTrueExpression()) || mayBeNull(conditional.getFalseExpression());
+      case METHOD_INVOCATION:
+        var method = element(((MethodInvocationTree) expression).getMethodSelect());
+        return method != null && isNullable(method);
+      case IDENTIFIER:
+      case MEMBER_SELECT:
+        var variable = element(expression);
+        return variable != null && variable.getKind().isField() && isNullable(variable);
+      default:
+        return false;
+    }
+  }
+
+  @Nullable
+  private Element element(@NotNull Tree tree) {
+    return trees.getElement(new TreePath(getCurrentPath(), tree));
+  }
+
+  private static boolean isNullable(@NotNull Element element) {
+    var type = element.getKind() == ElementKind.METHOD
+               ? ((ExecutableElement) element).getReturnType()
+               : element.asType();
+    return hasNullableAnnotation(element.getAnnotationMirrors())
+        || hasNullableAnnotation(type.getAnnotationMirrors());
+  }
+
+  private static boolean hasNullableAnnotation(@NotNull List<? extends AnnotationMirror> annotations) {
+    for (var annotation : annotations) {
+      var name = annotation.getAnnotationType().asElement().getSimpleName();
+      if (name.contentEquals("Nullable") || name.contentEquals("CheckForNull")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @NotNull
+  private static String describe(@NotNull Element element) {
+    switch (element.getKind()) {
+      case METHOD:
+        return "method " + element.getSimpleName() + "()";
+      case PARAMETER:
+        return "parameter " + element.getSimpleName();
+      case FIELD:
+        return "field " + element.getSimpleName();
+      default:
+        return "variable " + element.getSimpleName();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.javac;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Plugin;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.Trees;
+
+import javax.tools.Diagnostic;
+import java.util.Arrays;
+
+/**
+ * A javac plugin reporting null values flowing into elements with an
+ * implied {@code @NotNull}. Enable it with {@code -Xplugin:SansNull}, use
+ * {@code -Xplugin:"SansNull error"} to report errors instead of warnings.
+ *
+ * <p> The plugin checks each class right after attribution, so it only
+ * sees the classes javac actually compiles. This keeps it compatible with
+ * incremental compilation: it's not an annotation processor and doesn't
+ * add any dependencies between the classes. </p>
+ */
+public class SansNullPlugin implements Plugin {
+
+  @Override
+  public String getName() {
+    return "SansNull";
+  }
+
+  @Override
+  public void init(JavacTask task, String... args) {
+    var kind = Arrays.asList(args).contains("error") ? Diagnostic.Kind.ERROR : Diagnostic.Kind.WARNING;
+    var trees = Trees.instance(task);
+    var resolver = new ScopeResolver(task.getElements(), task.getTypes());
+    task.addTaskListener(new TaskListener() {
+      @Override
+      public void finished(TaskEvent event) {
+        if (event.getKind() != TaskEvent.Kind.ANALYZE || event.getTypeElement() == null) {
+          return;
+        }
+        var path = trees.getPath(event.getTypeElement());
+        if (path != null) {
+          new NullChecker(trees, resolver, kind).scan(path, null);
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.javac;
+
+import ch.raffael.sansnull.scope.SansNullScope;
+import ch.raffael.sansnull.scope.ScopeRules;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Resolution of {@code @SansNull} scopes on the javac element model,
+ * following the {@link ScopeRules} shared with the IDEA plugin and the
+ * analyzer. One instance per compilation, all results are cached.
+ */
+final class ScopeResolver {
+
+  private static final String SANS_NULL = "ch.raffael.sansnull.SansNull";
+  private static final String IMPLY = "ch.raffael.sansnull.SansNull.Imply";
+
+  @NotNull
+  private final Elements elements;
+  @NotNull
+  private final Types types;
+  private final Map<Element, Optional<SansNullScope>> declaredScopes = new HashMap<>();
+  private final Map<ExecutableElement, SansNullScope> superMethodsScopes = new HashMap<>();
+  private final Map<Element, Optional<SansNullScope>> impliedScopes = new HashMap<>();
+
+  ScopeResolver(@NotNull Elements elements, @NotNull Types types) {
+    this.elements = elements;
+    this.types = types;
+  }
+
+  /**
+   * The effective scope for a method, parameter, field or local variable.
+   */
+  @Nullable
+  SansNullScope scopeOf(@Nullable Element element) {
+    if (element == null) {
+      return null;
+    }
+    switch (element.getKind()) {
+      case METHOD:
+      case CONSTRUCTOR:
+        return methodScope((ExecutableElement) element);
+      case PARAMETER:
+        return element.getEnclosingElement() instanceof ExecutableElement
+               ? methodScope((ExecutableElement) element.getEnclosingElement())
+               : null;
+      case FIELD:
+        return declaredScope(element.getEnclosingElement());
+      case LOCAL_VARIABLE:
+      case RESOURCE_VARIABLE:
+      case EXCEPTION_PARAMETER:
+        // the super method rule doesn't apply to locals
+        return declaredScope(element.getEnclosingElement());
+      default:
+        return null;
+    }
+  }
+
+  @Nullable
+  private SansNullScope methodScope(@NotNull ExecutableElement method) {
+    return ScopeRules.method(declaredScope(method), () -> superMethodsScope(method));
+  }
+
+  @Nullable
+  private SansNullScope declaredScope(@Nullable Element element) {
+    if (element == null) {
+      return null;
+    }
+    var cached = declaredScopes.get(element);
+    if (cached == null) {
+      cached = Optional.ofNullable(resolveDeclaredScope(element));
+      declaredScopes.put(element, cached);
+    }
+    return cached.orElse(null);
+  }
+
+  @Nullable
+  private SansNullScope resolveDeclaredScope(@NotNull Element element) {
+    var own = ownScope(element);
+    if (own != null) {
+      return own;
+    }
+    var enclosing = element.getEnclosingElement();
+    if (element instanceof TypeElement) {
+      // local and anonymous classes use the scope of the enclosing class, like nested classes
+      while (enclosing != null && !(enclosing.getKind().isClass() || enclosing.getKind().isInterface()
+          || enclosing.getKind() == ElementKind.PACKAGE)) {
+        enclosing = enclosing.getEnclosingElement();
+      }
+    }
+    // method -> class -> outer class -> package -> module
+    return declaredScope(enclosing);
+  }
+
+  @NotNull
+  private SansNullScope superMethodsScope(@NotNull ExecutableElement method) {
+    var cached = superMethodsScopes.get(method);
+    if (cached == null) {
+      cached = SansNullScope.all();
+      for (var superMethod : findSuperMethods(method)) {
+        cached = ScopeRules.inherit(cached, declaredScope(superMethod), () -> superMethodsScope(superMethod));
+        if (cached.isEmpty()) {
+          break;
+        }
+      }
+      superMethodsScopes.put(method, cached);
+    }
+    return cached;
+  }
+
+  @NotNull
+  private List<ExecutableElement> findSuperMethods(@NotNull ExecutableElement method) {
+    var superMethods = new ArrayList<ExecutableElement>();
+    if (method.getKind() == ElementKind.METHOD && method.getEnclosingElement() instanceof TypeElement) {
+      findSuperMethods(method, (TypeElement) method.getEnclosingElement(),
+          ((TypeElement) method.getEnclosingElement()).asType(), new HashSet<>(), superMethods);
+    }
+    return superMethods;
+  }
+
+  private void findSuperMethods(@NotNull ExecutableElement method, @NotNull TypeElement owner, @NotNull TypeMirror type,
+                                @NotNull Set<Element> visited, @NotNull List<ExecutableElement> superMethods) {
+    for (var superType : types.directSupertypes(type)) {
+      if (!(superType instanceof DeclaredType) || !visited.add(((DeclaredType) superType).asElement())) {
+        continue;
+      }
+      var superClass = (TypeElement) ((DeclaredType) superType).asElement();
+      ExecutableElement found = null;
+      for (var candidate : ElementFilter.methodsIn(superClass.getEnclosedElements())) {
+        if (candidate.getSimpleName().equals(method.getSimpleName()) && elements.overrides(method, candidate, owner)) {
+          found = candidate;
+          break;
+        }
+      }
+      if (found != null) {
+        superMethods.add(found);
+      } else {
+        findSuperMethods(method, owner, superType, visited, superMethods);
+      }
+    }
+  }
+
+  @Nullable
+  private SansNullScope ownScope(@NotNull Element element) {
+    SansNullScope implied = null;
+    for (var annotation : element.getAnnotationMirrors()) {
+      var annotationType = annotation.getAnnotationType().asElement();
+      if (isNamed(annotationType, SANS_NULL)) {
+        return toScope(annotation);
+      }
+      implied = ScopeRules.merge(implied, impliedScope(annotationType));
+    }
+    return implied;
+  }
+
+  @Nullable
+  private SansNullScope impliedScope(@NotNull Element annotationType) {
+    var cached = impliedScopes.get(annotationType);
+    if (cached == null) {
+      cached = annotationType.getAnnotationMirrors().stream()
+          .filter(a -> isNamed(a.getAnnotationType().asElement(), IMPLY))
+          .findFirst()
+          .map(this::toScope);
+      impliedScopes.put(annotationType, cached);
+    }
+    return cached.orElse(null);
+  }
+
+  @NotNull
+  private SansNullScope toScope(@NotNull AnnotationMirror annotation) {
+    var scope = SansNullScope.defaults();
+    for (var entry : annotation.getElementValues().entrySet()) {
+      if (entry.getValue().getValue() instanceof Boolean) {
+        scope = scope.with(SansNullScope.flag(entry.getKey().getSimpleName().toString()),
+            (Boolean) entry.getValue().getValue());
+      }
+    }
+    return scope;
+  }
+
+  private static boolean isNamed(@NotNull Element element, @NotNull String qualifiedName) {
+    return element instanceof TypeElement && ((TypeElement) element).getQualifiedName().contentEquals(qualifiedName);
+  }
+}
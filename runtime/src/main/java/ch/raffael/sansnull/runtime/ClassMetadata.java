@@ -0,0 +1,205 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.runtime;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The nullness of the members of one class, read from the
+ * {@code Foo.sansnull} resource next to {@code Foo.class}. The resource is
+ * written by the weaver's {@code MetadataWriter}, see there for the
+ * format.
+ */
+final class ClassMetadata {
+
+  private static final ClassMetadata EMPTY = new ClassMetadata(Map.of(), Map.of(), Map.of());
+  private static final Nullness[] NONE = new Nullness[0];
+
+  private final Map<Field, Nullness> fields;
+  /**
+   * The return value first, then the parameters.
+   */
+  private final Map<Executable, Nullness[]> executables;
+  private final Map<Parameter, Nullness> parameters;
+
+  private ClassMetadata(Map<Field, Nullness> fields, Map<Executable, Nullness[]> executables,
+                        Map<Parameter, Nullness> parameters) {
+    this.fields = fields;
+    this.executables = executables;
+    this.parameters = parameters;
+  }
+
+  @NotNull
+  Nullness field(@NotNull Field field) {
+    return fields.getOrDefault(field, Nullness.UNKNOWN);
+  }
+
+  @NotNull
+  Nullness parameter(@NotNull Parameter parameter) {
+    return parameters.getOrDefault(parameter, Nullness.UNKNOWN);
+  }
+
+  @NotNull
+  Nullness parameter(@NotNull Executable executable, int index) {
+    var nullness = executables.getOrDefault(executable, NONE);
+    return index + 1 < nullness.length ? nullness[index + 1] : Nullness.UNKNOWN;
+  }
+
+  @NotNull
+  Nullness returnValue(@NotNull Method method) {
+    var nullness = executables.getOrDefault(method, NONE);
+    return nullness.length > 0 ? nullness[0] : Nullness.UNKNOWN;
+  }
+
+  @NotNull
+  static ClassMetadata load(@NotNull Class<?> type) {
+    var name = type.getName();
+    try (var in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".sansnull")) {
+      if (in == null) {
+        return EMPTY;
+      }
+      var lines = new HashMap<String, String>();
+      try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          var space = line.lastIndexOf(' ');
+          if (space > 0) {
+            lines.put(line.substring(0, space), line.substring(space + 1));
+          }
+        }
+      }
+      return parse(type, lines);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Error reading nullness metadata of " + type.getName(), e);
+    }
+  }
+
+  @NotNull
+  private static ClassMetadata parse(@NotNull Class<?> type, @NotNull Map<String, String> lines) {
+    var fields = new HashMap<Field, Nullness>();
+    for (var field : type.getDeclaredFields()) {
+      var nullness = lines.get("f " + field.getName());
+      if (nullness != null && !nullness.isEmpty()) {
+        fields.put(field, nullness(nullness.charAt(0)));
+      }
+    }
+    var executables = new HashMap<Executable, Nullness[]>();
+    var parameters = new HashMap<Parameter, Nullness>();
+    for (var method : type.getDeclaredMethods()) {
+      add(executables, parameters, method, lines.get("m " + method.getName() + descriptor(method)));
+    }
+    for (var constructor : type.getDeclaredConstructors()) {
+      add(executables, parameters, constructor, lines.get("m <init>" + descriptor(constructor)));
+    }
+    return new ClassMetadata(fields, executables, parameters);
+  }
+
+  private static void add(@NotNull Map<Executable, Nullness[]> executables, @NotNull Map<Parameter, Nullness> parameters,
+                          @NotNull Executable executable, @Nullable String line) {
+    if (line == null) {
+      return;
+    }
+    var nullness = new Nullness[line.length()];
+    for (int i = 0; i < nullness.length; i++) {
+      nullness[i] = nullness(line.charAt(i));
+    }
+    executables.put(executable, nullness);
+    // the reflective parameters may differ from the descriptor (e.g. inner
+    // class constructors), we only map them if they match
+    var reflected = executable.getParameters();
+    if (reflected.length == nullness.length - 1) {
+      for (int i = 0; i < reflected.length; i++) {
+        parameters.put(reflected[i], nullness[i + 1]);
+      }
+    }
+  }
+
+  @NotNull
+  private static Nullness nullness(char c) {
+    switch (c) {
+      case 'N':
+        return Nullness.NOT_NULL;
+      case '?':
+        return Nullness.NULLABLE;
+      default:
+        return Nullness.UNKNOWN;
+    }
+  }
+
+  @NotNull
+  private static String descriptor(@NotNull Executable executable) {
+    var descriptor = new StringBuilder("(");
+    for (var parameterType : executable.getParameterTypes()) {
+      descriptor(descriptor, parameterType);
+    }
+    descriptor.append(')');
+    descriptor(descriptor, executable instanceof Method ? ((Method) executable).getReturnType() : void.class);
+    return descriptor.toString();
+  }
+
+  private static void descriptor(@NotNull StringBuilder descriptor, @NotNull Class<?> type) {
+    if (type.isArray()) {
+      descriptor.append(type.getName().replace('.', '/'));
+    } else if (type.isPrimitive()) {
+      descriptor.append(primitiveDescriptor(type));
+    } else {
+      descriptor.append('L').append(type.getName().replace('.', '/')).append(';');
+    }
+  }
+
+  private static char primitiveDescriptor(@NotNull Class<?> type) {
+    if (type == int.class) {
+      return 'I';
+    } else if (type == long.class) {
+      return 'J';
+    } else if (type == boolean.class) {
+      return 'Z';
+    } else if (type == byte.class) {
+      return 'B';
+    } else if (type == char.class) {
+      return 'C';
+    } else if (type == short.class) {
+      return 'S';
+    } else if (type == float.class) {
+      return 'F';
+    } else if (type == double.class) {
+      return 'D';
+    } else {
+      return 'V';
+    }
+  }
+}
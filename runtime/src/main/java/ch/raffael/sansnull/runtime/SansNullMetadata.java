@@ -0,0 +1,77 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.runtime;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+
+/**
+ * Runtime access to the effective nullness of fields, parameters and
+ * method return values. {@code @SansNull} isn't retained at runtime, this
+ * uses the metadata generated by the weaver at build time instead.
+ *
+ * <p> The metadata of a class is read once and cached in a
+ * {@link ClassValue}, lookups don't allocate anything. Classes without
+ * metadata have {@link Nullness#UNKNOWN} everywhere. </p>
+ */
+public final class SansNullMetadata {
+
+  private static final ClassValue<ClassMetadata> METADATA = new ClassValue<>() {
+    @Override
+    protected ClassMetadata computeValue(Class<?> type) {
+      return ClassMetadata.load(type);
+    }
+  };
+
+  private SansNullMetadata() {
+  }
+
+  @NotNull
+  public static Nullness of(@NotNull Field field) {
+    return METADATA.get(field.getDeclaringClass()).field(field);
+  }
+
+  @NotNull
+  public static Nullness of(@NotNull Parameter parameter) {
+    return METADATA.get(parameter.getDeclaringExecutable().getDeclaringClass()).parameter(parameter);
+  }
+
+  /**
+   * Unlike {@link #of(Parameter)}, this doesn't require to get the
+   * parameters from the executable, which creates a new array every
+   * time.
+   */
+  @NotNull
+  public static Nullness ofParameter(@NotNull Executable executable, int index) {
+    return METADATA.get(executable.getDeclaringClass()).parameter(executable, index);
+  }
+
+  @NotNull
+  public static Nullness ofReturnValue(@NotNull Method method) {
+    return METADATA.get(method.getDeclaringClass()).returnValue(method);
+  }
+}
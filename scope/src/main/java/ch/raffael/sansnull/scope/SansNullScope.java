@@ -0,0 +1,137 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.scope;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.StringJoiner;
+import java.util.stream.IntStream;
+
+/**
+ * The effective attributes of a {@code @SansNull} scope as bit mask.
+ * Instances are interned, there's exactly one instance per combination.
+ *
+ * <p> This is shared by the IDEA plugin, the analyzer and the javac
+ * plugin, so it must not have any runtime dependencies. </p>
+ *
+ * @see ScopeRules
+ */
+public final class SansNullScope {
+
+  public static final int METHOD = 1;
+  public static final int FIELD = 1 << 1;
+  public static final int PARAMETER = 1 << 2;
+  public static final int LOCAL = 1 << 3;
+  public static final int ALL = METHOD | FIELD | PARAMETER | LOCAL;
+  public static final int DEFAULTS = METHOD | FIELD | PARAMETER;
+
+  private static final SansNullScope[] INSTANCES = IntStream.rangeClosed(0, ALL)
+      .mapToObj(SansNullScope::new)
+      .toArray(SansNullScope[]::new);
+
+  private final int flags;
+
+  private SansNullScope(int flags) {
+    this.flags = flags;
+  }
+
+  @NotNull
+  public static SansNullScope of(int flags) {
+    return INSTANCES[flags & ALL];
+  }
+
+  @NotNull
+  public static SansNullScope all() {
+    return INSTANCES[ALL];
+  }
+
+  @NotNull
+  public static SansNullScope defaults() {
+    return INSTANCES[DEFAULTS];
+  }
+
+  @NotNull
+  public static SansNullScope none() {
+    return INSTANCES[0];
+  }
+
+  public static int flag(@NotNull String attributeName) {
+    switch (attributeName) {
+      case "method":
+        return METHOD;
+      case "field":
+        return FIELD;
+      case "parameter":
+        return PARAMETER;
+      case "local":
+        return LOCAL;
+      default:
+        return 0;
+    }
+  }
+
+  public int flags() {
+    return flags;
+  }
+
+  public boolean has(int flag) {
+    return flag != 0 && (flags & flag) == flag;
+  }
+
+  public boolean isEmpty() {
+    return flags == 0;
+  }
+
+  @NotNull
+  public SansNullScope with(int flag, boolean enabled) {
+    return of(enabled ? flags | flag : flags & ~flag);
+  }
+
+  @NotNull
+  public SansNullScope merge(@NotNull SansNullScope that) {
+    return of(flags | that.flags);
+  }
+
+  @NotNull
+  public SansNullScope intersect(@NotNull SansNullScope that) {
+    return of(flags & that.flags);
+  }
+
+  @Override
+  public String toString() {
+    var joiner = new StringJoiner(",", "SansNullScope[", "]");
+    if (has(METHOD)) {
+      joiner.add("method");
+    }
+    if (has(FIELD)) {
+      joiner.add("field");
+    }
+    if (has(PARAMETER)) {
+      joiner.add("parameter");
+    }
+    if (has(LOCAL)) {
+      joiner.add("local");
+    }
+    return joiner.toString();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+
+package ch.raffael.sansnull.scope;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * The rules for combining {@code @SansNull} scopes, shared by all
+ * resolvers. Finding the annotations and walking the hierarchy is up to
+ * the resolvers, they all follow the same order:
+ *
+ * <ul>
+ *   <li>a method uses its own scope or the class scope, restricted to
+ *     what all overridden methods get, too (the super method rule);</li>
+ *   <li>parameters use the method scope, fields the class scope;</li>
+ *   <li>a class uses its own scope, the scope of the outer class, the
+ *     package or the module, in that order;</li>
+ *   <li>an explicit {@code @SansNull} overrides implied ones, multiple
+ *     implied ones are merged.</li>
+ * </ul>
+ */
+public final class ScopeRules {
+
+  private ScopeRules() {
+  }
+
+  /**
+   * The scope of an element with the given explicit and implied scopes.
+   */
+  @Nullable
+  public static SansNullScope declared(@Nullable SansNullScope explicit, @Nullable SansNullScope implied) {
+    return explicit != null ? explicit : implied;
+  }
+
+  /**
+   * Merge two implied scopes (or the explicit scopes of a package declared
+   * in several roots).
+   */
+  @Nullable
+  public static SansNullScope merge(@Nullable SansNullScope first, @Nullable SansNullScope second) {
+    return first == null ? second : second == null ? first : first.merge(second);
+  }
+
+  /**
+   * Restrict the scope inherited from the super methods seen so far by
+   * another overridden method. A super method without any scope leaves
+   * nothing.
+   *
+   * @param inherited      The scope inherited so far, start with
+   *                       {@link SansNullScope#all()}.
+   * @param superDeclared  The declared scope of the super method.
+   * @param superInherited The scope the super method inherits itself, only
+   *                       evaluated if needed.
+   */
+  @NotNull
+  public static SansNullScope inherit(@NotNull SansNullScope inherited, @Nullable SansNullScope superDeclared,
+                                      @NotNull Supplier<@NotNull SansNullScope> superInherited) {
+    if (superDeclared == null) {
+      return SansNullScope.none();
+    }
+    return inherited.intersect(superDeclared).intersect(superInherited.get());
+  }
+
+  /**
+   * The effective scope of a method (and its parameters) after applying
+   * the super method rule. The inherited scope is only evaluated if
+   * needed.
+   */
+  @Nullable
+  public static SansNullScope method(@Nullable SansNullScope declared,
+                                     @NotNull Supplier<@NotNull SansNullScope> inherited) {
+    return declared == null ? null : declared.intersect(inherited.get());
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver.bench;
+
+import ch.raffael.sansnull.SansNull;
+
+import java.util.Map;
+
+/**
+ * Woven, the same methods as {@link Plain}.
+ */
+@SansNull
+public class Checked {
+
+  public String name(String first, String last) {
+    return first + " " + last;
+  }
+
+  public Object identity(Object value) {
+    return value;
+  }
+
+  public int[] copy(int[] values) {
+    var copy = new int[values.length];
+    System.arraycopy(values, 0, copy, 0, values.length);
+    return copy;
+  }
+
+  public String lookup(Map<String, String> map, String key) {
+    return map.getOrDefault(key, key);
+  }
+
+  public int length(String value) {
+    return count(value, 0);
+  }
+
+  private int count(String value, int offset) {
+    return value.length() - offset;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares hot methods with and without null checks. {@link Checked} is
+ * woven, {@link Plain} isn't.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NullCheckBenchmark {
+
+  // not final, so the JIT can't fold the checks away
+  private Checked checked = new Checked();
+  private Plain plain = new Plain();
+  private String first = "Raffael";
+  private String last = "Herzog";
+  private Object object = new Object();
+  private int[] values = {1, 2, 3, 4, 5, 6, 7, 8};
+  private Map<String, String> map = Map.of("a", "1", "b", "2");
+
+  @Benchmark
+  public String nameChecked() {
+    return checked.name(first, last);
+  }
+
+  @Benchmark
+  public String namePlain() {
+    return plain.name(first, last);
+  }
+
+  @Benchmark
+  public Object identityChecked() {
+    return checked.identity(object);
+  }
+
+  @Benchmark
+  public Object identityPlain() {
+    return plain.identity(object);
+  }
+
+  @Benchmark
+  public int[] copyChecked() {
+    return checked.copy(values);
+  }
+
+  @Benchmark
+  public int[] copyPlain() {
+    return plain.copy(values);
+  }
+
+  @Benchmark
+  public String lookupChecked() {
+    return checked.lookup(map, first);
+  }
+
+  @Benchmark
+  public String lookupPlain() {
+    return plain.lookup(map, first);
+  }
+
+  @Benchmark
+  public int lengthChecked() {
+    return checked.length(first);
+  }
+
+  @Benchmark
+  public int lengthPlain() {
+    return plain.length(first);
+  }
+}
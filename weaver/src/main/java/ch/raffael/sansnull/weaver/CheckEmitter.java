@@ -0,0 +1,56 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.analyzer.NullCheck;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+
+/**
+ * Emits the code for the null checks, there's one instance per woven
+ * class. The code must not contain any branches, so the stack map frames
+ * of the woven methods remain valid.
+ */
+public interface CheckEmitter {
+
+  /**
+   * Whether checks can be emitted in the given class at all, e.g. its
+   * class file version may be too old.
+   */
+  boolean canWeave(@NotNull ClassNode owner);
+
+  /**
+   * The code checking the value on top of the stack. It must consume
+   * the value and may use one more stack slot.
+   */
+  @NotNull
+  InsnList check(@NotNull ClassNode owner, @NotNull NullCheck check, @NotNull String message);
+
+  /**
+   * Called after all checks have been emitted, e.g. to add helper
+   * methods.
+   */
+  default void finish(@NotNull ClassNode owner) {
+  }
+}
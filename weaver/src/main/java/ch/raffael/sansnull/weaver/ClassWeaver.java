@@ -0,0 +1,295 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.analyzer.ClassInfo;
+import ch.raffael.sansnull.analyzer.Resolver;
+import ch.raffael.sansnull.scope.SansNullScope;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inserts the null checks into one class, the code for the checks comes
+ * from the {@link CheckEmitter}.
+ */
+final class ClassWeaver {
+
+  static final String WOVEN_ATTRIBUTE = "ch.raffael.sansnull.Woven";
+
+  @NotNull
+  private final Resolver resolver;
+  @NotNull
+  private final ClassInfo info;
+  @NotNull
+  private final ClassNode node;
+  @NotNull
+  private final CheckEmitter emitter;
+  private final Map<MethodNode, Plan> plans = new LinkedHashMap<>();
+  private int checks = 0;
+  private int elided = 0;
+
+  ClassWeaver(@NotNull Resolver resolver, @NotNull ClassInfo info, @NotNull ClassNode node,
+              @NotNull CheckEmitter emitter) {
+    this.resolver = resolver;
+    this.info = info;
+    this.node = node;
+    this.emitter = emitter;
+  }
+
+  int checks() {
+    return checks;
+  }
+
+  int elided() {
+    return elided;
+  }
+
+  /**
+   * @return {@code true} if the class has been changed.
+   */
+  boolean weave() {
+    if (isWoven() || !emitter.canWeave(node)) {
+      return false;
+    }
+    for (var method : node.methods) {
+      var plan = plan(method);
+      if (plan != null) {
+        plans.put(method, plan);
+      }
+    }
+    if (plans.isEmpty()) {
+      return false;
+    }
+    var analysis = new NonNullAnalysis(node, plans);
+    elidePrivateParameterChecks(analysis);
+    analysis.parametersDecided();
+    // decide everything before changing any code, the analysis works on the original code
+    var returnChecks = new HashMap<MethodNode, List<AbstractInsnNode>>();
+    plans.forEach((method, plan) -> returnChecks.put(method, returnChecks(method, plan, analysis)));
+    plans.forEach((method, plan) -> emit(method, plan, returnChecks.get(method)));
+    if (checks == 0) {
+      return false;
+    }
+    emitter.finish(node);
+    if (node.attrs == null) {
+      node.attrs = new ArrayList<>();
+    }
+    node.attrs.add(new WovenAttribute());
+    return true;
+  }
+
+  private boolean isWoven() {
+    return node.attrs != null && node.attrs.stream().anyMatch(a -> a.type.equals(WOVEN_ATTRIBUTE));
+  }
+
+  @Nullable
+  private Plan plan(@NotNull MethodNode method) {
+    if ((method.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) != 0
+        || method.name.equals("<clinit>")) {
+      return null;
+    }
+    var methodInfo = info.findMethod(method.name, method.desc);
+    var scope = methodInfo == null ? null : resolver.methodScope(info, methodInfo);
+    if (scope == null) {
+      return null;
+    }
+    var checkParameters = scope.has(SansNullScope.PARAMETER);
+    var types = Type.getArgumentTypes(method.desc);
+    var slots = new int[types.length];
+    var covered = new boolean[types.length];
+    var slot = (method.access & Opcodes.ACC_STATIC) == 0 ? 1 : 0;
+    for (int i = 0; i < types.length; i++) {
+      slots[i] = slot;
+      covered[i] = checkParameters && isReference(types[i]) && !methodInfo.isParameterNullable(i)
+          && !info.isImplicitParameter(methodInfo, i);
+      slot += types[i].getSize();
+    }
+    var returnCovered = scope.has(SansNullScope.METHOD) && isReference(Type.getReturnType(method.desc))
+        && !methodInfo.isReturnNullable();
+    var plan = new Plan(methodInfo, resolver.methodCheck(info, methodInfo), slots, covered, returnCovered);
+    return plan.isEmpty() ? null : plan;
+  }
+
+  /**
+   * Private methods can only be called from within the class. If all
+   * call sites pass values that are known to be non-null, the check is
+   * redundant. Nest mates and method handles (lambdas, method references)
+   * may call them from elsewhere, we don't elide anything then. Neither do
+   * we if there are no calls at all, the method is probably called using
+   * reflection.
+   */
+  private void elidePrivateParameterChecks(@NotNull NonNullAnalysis analysis) {
+    if (node.nestHostClass != null || node.nestMembers != null) {
+      return;
+    }
+    var callSites = new HashMap<String, List<Map.Entry<MethodNode, MethodInsnNode>>>();
+    var referenced = new HashSet<String>();
+    for (var method : node.methods) {
+      for (var insn : method.instructions) {
+        if (insn instanceof MethodInsnNode && ((MethodInsnNode) insn).owner.equals(node.name)) {
+          var call = (MethodInsnNode) insn;
+          callSites.computeIfAbsent(call.name + call.desc, k -> new ArrayList<>()).add(Map.entry(method, call));
+        } else if (insn instanceof InvokeDynamicInsnNode) {
+          addHandles(referenced, ((InvokeDynamicInsnNode) insn).bsmArgs);
+        } else if (insn instanceof LdcInsnNode) {
+          addHandles(referenced, ((LdcInsnNode) insn).cst);
+        }
+      }
+    }
+    plans.forEach((method, plan) -> {
+      var key = method.name + method.desc;
+      if ((method.access & Opcodes.ACC_PRIVATE) == 0 || referenced.contains(key) || !callSites.containsKey(key)) {
+        return;
+      }
+      for (int i = 0; i < plan.parameters.length; i++) {
+        if (plan.parameters[i] && allNonNull(analysis, callSites.get(key), plan.parameters.length - 1 - i)) {
+          plan.parameters[i] = false;
+          elided++;
+        }
+      }
+    });
+  }
+
+  private static boolean allNonNull(@NotNull NonNullAnalysis analysis,
+                                    @NotNull List<Map.Entry<MethodNode, MethodInsnNode>> callSites, int depth) {
+    for (var callSite : callSites) {
+      if (!analysis.isNonNull(callSite.getKey(), callSite.getValue(), depth)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void addHandles(@NotNull Set<String> referenced, Object... constants) {
+    for (var constant : constants) {
+      if (constant instanceof Handle && ((Handle) constant).getOwner().equals(node.name)) {
+        referenced.add(((Handle) constant).getName() + ((Handle) constant).getDesc());
+      }
+    }
+  }
+
+  @NotNull
+  private List<AbstractInsnNode> returnChecks(@NotNull MethodNode method, @NotNull Plan plan,
+                                              @NotNull NonNullAnalysis analysis) {
+    var returns = new ArrayList<AbstractInsnNode>();
+    if (plan.returnValue) {
+      for (var insn : method.instructions) {
+        if (insn.getOpcode() != Opcodes.ARETURN) {
+          continue;
+        }
+        if (analysis.isNonNull(method, insn, 0)) {
+          elided++;
+        } else {
+          returns.add(insn);
+        }
+      }
+    }
+    return returns;
+  }
+
+  private void emit(@NotNull MethodNode method, @NotNull Plan plan, @NotNull List<AbstractInsnNode> returns) {
+    var entry = new InsnList();
+    for (int i = 0; i < plan.parameters.length; i++) {
+      if (plan.parameters[i]) {
+        entry.add(new VarInsnNode(Opcodes.ALOAD, plan.slots[i]));
+        entry.add(emitter.check(node, plan.check, plan.check.message(describeParameter(method, plan, i))));
+        checks++;
+      }
+    }
+    if (entry.size() > 0) {
+      method.instructions.insert(entry);
+    }
+    for (var insn : returns) {
+      var check = new InsnList();
+      check.add(new InsnNode(Opcodes.DUP));
+      check.add(emitter.check(node, plan.check, plan.check.message("return value of " + describeMethod(method))));
+      method.instructions.insertBefore(insn, check);
+      checks++;
+    }
+    method.maxStack += 2;
+  }
+
+  @NotNull
+  private String describeParameter(@NotNull MethodNode method, @NotNull Plan plan, int index) {
+    String name = null;
+    if (method.parameters != null && index < method.parameters.size()) {
+      name = method.parameters.get(index).name;
+    }
+    if (name == null && method.localVariables != null) {
+      for (var local : method.localVariables) {
+        if (local.index == plan.slots[index]) {
+          name = local.name;
+          break;
+        }
+      }
+    }
+    return "parameter " + (name == null ? "#" + index : "'" + name + "'") + " of " + describeMethod(method);
+  }
+
+  @NotNull
+  private String describeMethod(@NotNull MethodNode method) {
+    return method.name.equals("<init>") ? "new " + info.className() + "()" : info.className() + "." + method.name + "()";
+  }
+
+  private static boolean isReference(@NotNull Type type) {
+    return type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY;
+  }
+
+  /**
+   * Marks woven classes, so they're not woven twice e.g. by incremental
+   * builds. The JVM ignores unknown attributes.
+   */
+  private static final class WovenAttribute extends Attribute {
+    WovenAttribute() {
+      super(WOVEN_ATTRIBUTE);
+    }
+
+    @Override
+    protected ByteVector write(ClassWriter classWriter, byte[] code, int codeLength, int maxStack, int maxLocals) {
+      return new ByteVector();
+    }
+  }
+}
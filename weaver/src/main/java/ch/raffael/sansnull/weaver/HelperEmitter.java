@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.analyzer.NullCheck;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The default: a call to a synthetic helper method per exception type,
+ * {@code $sansNull$check(value, message)}. This keeps the woven methods
+ * small (6 or 7 bytes per check), so they're still inlined. The helper
+ * itself is trivial, the JIT inlines it and moves the throw out of the
+ * hot path.
+ */
+final class HelperEmitter implements CheckEmitter {
+
+  private static final String HELPER_NAME = "$sansNull$check";
+  private static final String HELPER_DESC = "(Ljava/lang/Object;Ljava/lang/String;)V";
+
+  private final Map<String, String> helpers = new LinkedHashMap<>();
+  private String helperName = null;
+
+  @Override
+  public boolean canWeave(@NotNull ClassNode owner) {
+    // interfaces can only have static methods since Java 8
+    return !isInterface(owner) || version(owner) >= Opcodes.V1_8;
+  }
+
+  @Override
+  @NotNull
+  public InsnList check(@NotNull ClassNode owner, @NotNull NullCheck check, @NotNull String message) {
+    if (helperName == null) {
+      helperName = HELPER_NAME;
+      while (hasMethodStartingWith(owner, helperName)) {
+        helperName += "$";
+      }
+    }
+    var helper = helpers.computeIfAbsent(check.exception(),
+        e -> helpers.isEmpty() ? helperName : helperName + "$" + helpers.size());
+    var code = new InsnList();
+    code.add(new LdcInsnNode(message));
+    code.add(new MethodInsnNode(Opcodes.INVOKESTATIC, owner.name, helper, HELPER_DESC, isInterface(owner)));
+    return code;
+  }
+
+  @Override
+  public void finish(@NotNull ClassNode owner) {
+    helpers.forEach((exception, name) -> addHelper(owner, exception, name));
+  }
+
+  private static void addHelper(@NotNull ClassNode owner, @NotNull String exception, @NotNull String name) {
+    // private interface methods are only allowed since Java 9
+    var access = Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC
+        | (isInterface(owner) && version(owner) < Opcodes.V9 ? Opcodes.ACC_PUBLIC : Opcodes.ACC_PRIVATE);
+    var helper = new MethodNode(Opcodes.ASM9, access, name, HELPER_DESC, null, null);
+    var ok = new LabelNode();
+    var code = helper.instructions;
+    code.add(new VarInsnNode(Opcodes.ALOAD, 0));
+    code.add(new JumpInsnNode(Opcodes.IFNONNULL, ok));
+    code.add(new TypeInsnNode(Opcodes.NEW, exception));
+    code.add(new InsnNode(Opcodes.DUP));
+    code.add(new VarInsnNode(Opcodes.ALOAD, 1));
+    code.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, exception, "<init>", "(Ljava/lang/String;)V", false));
+    code.add(new InsnNode(Opcodes.ATHROW));
+    code.add(ok);
+    if (version(owner) >= Opcodes.V1_6) {
+      code.add(new FrameNode(Opcodes.F_SAME, 0, null, 0, null));
+    }
+    code.add(new InsnNode(Opcodes.RETURN));
+    helper.maxStack = 3;
+    helper.maxLocals = 2;
+    owner.methods.add(helper);
+  }
+
+  private static boolean hasMethodStartingWith(@NotNull ClassNode owner, @NotNull String prefix) {
+    return owner.methods.stream().anyMatch(m -> m.name.startsWith(prefix));
+  }
+
+  private static boolean isInterface(@NotNull ClassNode owner) {
+    return (owner.access & Opcodes.ACC_INTERFACE) != 0;
+  }
+
+  private static int version(@NotNull ClassNode owner) {
+    return owner.version & 0xffff;
+  }
+}
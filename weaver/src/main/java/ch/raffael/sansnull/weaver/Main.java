@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.analyzer.ClassPath;
+import ch.raffael.sansnull.analyzer.Resolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+/**
+ * Command line interface, weaves class directories in place:
+ *
+ * <pre>
+ * sansnull-weaver [--classpath &lt;path&gt;] &lt;directory&gt;...
+ * </pre>
+ *
+ * <p> The class path is only used to resolve super classes, annotations
+ * etc. </p>
+ */
+public final class Main {
+
+  private Main() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    var classPath = new ClassPath();
+    var directories = new ArrayList<Path>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--classpath") || args[i].equals("-cp")) {
+        if (++i >= args.length) {
+          usage();
+        }
+        for (var element : args[i].split(File.pathSeparator)) {
+          if (!element.isEmpty() && Files.exists(Path.of(element))) {
+            classPath.add(Path.of(element), false);
+          }
+        }
+      } else if (args[i].startsWith("-")) {
+        usage();
+      } else {
+        var directory = Path.of(args[i]);
+        classPath.add(directory, true);
+        directories.add(directory);
+      }
+    }
+    if (directories.isEmpty()) {
+      usage();
+    }
+    var start = System.nanoTime();
+    var weaver = new Weaver(new Resolver(classPath.load()));
+    for (var directory : directories) {
+      weaver.weave(directory);
+    }
+    System.err.printf("%d classes woven, %d checks inserted, %d redundant checks elided (%d ms)%n",
+        weaver.classes(), weaver.checks(), weaver.elided(), (System.nanoTime() - start) / 1_000_000);
+  }
+
+  private static void usage() {
+    System.err.println("Usage: sansnull-weaver [--classpath <path>] <directory>...");
+    System.exit(2);
+  }
+}
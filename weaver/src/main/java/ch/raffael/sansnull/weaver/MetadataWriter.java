@@ -0,0 +1,106 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.analyzer.ClassInfo;
+import ch.raffael.sansnull.analyzer.Resolver;
+import ch.raffael.sansnull.scope.SansNullScope;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the nullness metadata read by the runtime library
+ * ({@code ch.raffael.sansnull.runtime}), a {@code Foo.sansnull} resource
+ * next to {@code Foo.class}. It's UTF-8 text, one line per member:
+ *
+ * <pre>
+ * f &lt;name&gt; &lt;nullness&gt;
+ * m &lt;name&gt;&lt;descriptor&gt; &lt;return nullness&gt;&lt;parameter nullness&gt;...
+ * </pre>
+ *
+ * <p> The nullness is {@code N} for not null (implied by
+ * {@code @SansNull} or annotated), {@code ?} for nullable and {@code -}
+ * for unknown or primitive. Members without any known nullness are left
+ * out. </p>
+ */
+final class MetadataWriter {
+
+  static final String EXTENSION = ".sansnull";
+
+  private MetadataWriter() {
+  }
+
+  /**
+   * @return The metadata or {@code null} if there's nothing to write.
+   */
+  @Nullable
+  static byte[] write(@NotNull Resolver resolver, @NotNull ClassInfo info) {
+    var out = new StringBuilder();
+    var fieldScope = resolver.fieldScope(info);
+    for (var field : info.fields()) {
+      if ((field.access() & Opcodes.ACC_SYNTHETIC) != 0) {
+        continue;
+      }
+      var nullness = nullness(Type.getType(field.desc()), field.isAnnotated(), field.isNullable(),
+          fieldScope != null && fieldScope.has(SansNullScope.FIELD));
+      if (nullness != '-') {
+        out.append("f ").append(field.name()).append(' ').append(nullness).append('\n');
+      }
+    }
+    for (var method : info.methods()) {
+      if ((method.access() & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) != 0 || method.name().equals("<clinit>")) {
+        continue;
+      }
+      var scope = resolver.methodScope(info, method);
+      var parametersCovered = scope != null && scope.has(SansNullScope.PARAMETER);
+      var nullness = new StringBuilder();
+      nullness.append(nullness(Type.getReturnType(method.desc()), method.isReturnAnnotated(), method.isReturnNullable(),
+          scope != null && scope.has(SansNullScope.METHOD)));
+      var parameterTypes = Type.getArgumentTypes(method.desc());
+      for (int i = 0; i < parameterTypes.length; i++) {
+        nullness.append(nullness(parameterTypes[i], method.isParameterAnnotated(i), method.isParameterNullable(i),
+            parametersCovered && !info.isImplicitParameter(method, i)));
+      }
+      if (nullness.chars().anyMatch(c -> c != '-')) {
+        out.append("m ").append(method.name()).append(method.desc()).append(' ').append(nullness).append('\n');
+      }
+    }
+    return out.length() == 0 ? null : out.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static char nullness(@NotNull Type type, boolean annotated, boolean nullable, boolean covered) {
+    if (type.getSort() != Type.OBJECT && type.getSort() != Type.ARRAY) {
+      return '-';
+    } else if (nullable) {
+      return '?';
+    } else if (annotated || covered) {
+      return 'N';
+    } else {
+      return '-';
+    }
+  }
+}
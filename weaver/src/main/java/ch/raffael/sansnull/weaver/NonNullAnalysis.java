@@ -0,0 +1,234 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.Frame;
+import org.objectweb.asm.tree.analysis.SourceInterpreter;
+import org.objectweb.asm.tree.analysis.SourceValue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Proves that values can't be null, to elide redundant checks. A value
+ * is non-null if all instructions it may come from produce non-null
+ * values:
+ *
+ * <ul>
+ *   <li>allocations and constants;</li>
+ *   <li>{@code this} and parameters covered by {@code @SansNull}, these
+ *     have been checked on entry or proven non-null by all callers;</li>
+ *   <li>results of non-virtual calls to methods in the same class with a
+ *     return check, and of {@code Objects.requireNonNull()};</li>
+ *   <li>local variables that only get such values.</li>
+ * </ul>
+ *
+ * <p> Frames are computed lazily, only for methods where there's
+ * something to elide. </p>
+ */
+final class NonNullAnalysis {
+
+  @NotNull
+  private final ClassNode owner;
+  @NotNull
+  private final Map<MethodNode, Plan> plans;
+  private final Map<MethodNode, Frame<SourceValue>[]> frames = new HashMap<>();
+  private boolean parametersDecided = false;
+
+  NonNullAnalysis(@NotNull ClassNode owner, @NotNull Map<MethodNode, Plan> plans) {
+    this.owner = owner;
+    this.plans = plans;
+  }
+
+  /**
+   * Called once all parameter checks have been decided. Until then, only
+   * parameters that are still checked count as non-null on entry: if the
+   * proof for an elided parameter could use another elided one, mutually
+   * recursive methods would prove each other's parameters.
+   */
+  void parametersDecided() {
+    parametersDecided = true;
+  }
+
+  /**
+   * Whether the stack value at the given depth (0 is the top) before the
+   * given instruction is non-null.
+   */
+  boolean isNonNull(@NotNull MethodNode method, @NotNull AbstractInsnNode insn, int depth) {
+    var frame = frame(method, insn);
+    if (frame == null || frame.getStackSize() <= depth) {
+      return false;
+    }
+    return isNonNull(method, frame.getStack(frame.getStackSize() - 1 - depth), new HashSet<>());
+  }
+
+  private boolean isNonNull(@NotNull MethodNode method, @NotNull SourceValue value,
+                            @NotNull Set<AbstractInsnNode> visited) {
+    if (value.insns.isEmpty()) {
+      return false;
+    }
+    for (var insn : value.insns) {
+      if (!producesNonNull(method, insn, visited)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean producesNonNull(@NotNull MethodNode method, @NotNull AbstractInsnNode insn,
+                                  @NotNull Set<AbstractInsnNode> visited) {
+    if (!visited.add(insn)) {
+      // a cycle of stores and loads, whatever enters it has been checked elsewhere
+      return true;
+    }
+    switch (insn.getOpcode()) {
+      case Opcodes.NEW:
+      case Opcodes.NEWARRAY:
+      case Opcodes.ANEWARRAY:
+      case Opcodes.MULTIANEWARRAY:
+        return true;
+      case Opcodes.LDC:
+        return !(((LdcInsnNode) insn).cst instanceof ConstantDynamic);
+      case Opcodes.CHECKCAST:
+      case Opcodes.DUP:
+      case Opcodes.ASTORE:
+        return isStackTopNonNull(method, insn, visited);
+      case Opcodes.ALOAD:
+        return isLocalNonNull(method, insn, ((VarInsnNode) insn).var, visited);
+      case Opcodes.INVOKESTATIC:
+      case Opcodes.INVOKESPECIAL:
+      case Opcodes.INVOKEVIRTUAL:
+        return isCheckedResult((MethodInsnNode) insn);
+      default:
+        return false;
+    }
+  }
+
+  private boolean isStackTopNonNull(@NotNull MethodNode method, @NotNull AbstractInsnNode insn,
+                                    @NotNull Set<AbstractInsnNode> visited) {
+    var frame = frame(method, insn);
+    return frame != null && frame.getStackSize() > 0
+        && isNonNull(method, frame.getStack(frame.getStackSize() - 1), visited);
+  }
+
+  private boolean isLocalNonNull(@NotNull MethodNode method, @NotNull AbstractInsnNode insn, int slot,
+                                 @NotNull Set<AbstractInsnNode> visited) {
+    var frame = frame(method, insn);
+    if (frame == null) {
+      return false;
+    }
+    var value = frame.getLocal(slot);
+    // the sources of the value don't tell whether some path still has the
+    // initial value, so parameters must be non-null on entry in any case
+    if (slot < parametersSize(method) && !isNonNullOnEntry(method, slot)) {
+      return false;
+    }
+    for (var source : value.insns) {
+      if (!producesNonNull(method, source, visited)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int parametersSize(@NotNull MethodNode method) {
+    // including this, which is included in the argument sizes anyway
+    var size = Type.getArgumentsAndReturnSizes(method.desc) >> 2;
+    return (method.access & Opcodes.ACC_STATIC) != 0 ? size - 1 : size;
+  }
+
+  private boolean isNonNullOnEntry(@NotNull MethodNode method, int slot) {
+    var isStatic = (method.access & Opcodes.ACC_STATIC) != 0;
+    if (slot == 0 && !isStatic) {
+      return true;
+    }
+    var plan = plans.get(method);
+    if (plan == null) {
+      return false;
+    }
+    var index = plan.parameterIndex(slot);
+    if (index < 0) {
+      return false;
+    }
+    // each elision only relied on parameters that were still checked at
+    // that time, so the proofs can't be circular
+    return parametersDecided ? plan.covered[index] : plan.parameters[index];
+  }
+
+  private boolean isCheckedResult(@NotNull MethodInsnNode call) {
+    if (call.getOpcode() == Opcodes.INVOKESTATIC && call.owner.equals("java/util/Objects")
+        && call.name.equals("requireNonNull")) {
+      return true;
+    }
+    if (!call.owner.equals(owner.name)) {
+      return false;
+    }
+    for (var entry : plans.entrySet()) {
+      var method = entry.getKey();
+      if (method.name.equals(call.name) && method.desc.equals(call.desc)) {
+        return entry.getValue().returnCovered && !isOverridable(call, method);
+      }
+    }
+    return false;
+  }
+
+  private boolean isOverridable(@NotNull MethodInsnNode call, @NotNull MethodNode method) {
+    // an override in a subclass may not be checked
+    return call.getOpcode() == Opcodes.INVOKEVIRTUAL
+        && (method.access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL)) == 0
+        && (owner.access & Opcodes.ACC_FINAL) == 0;
+  }
+
+  @Nullable
+  private Frame<SourceValue> frame(@NotNull MethodNode method, @NotNull AbstractInsnNode insn) {
+    var methodFrames = frames.computeIfAbsent(method, m -> {
+      try {
+        return new Analyzer<>(new SourceInterpreter()).analyze(owner.name, m);
+      }
+      catch (AnalyzerException e) {
+        // we just don't elide anything then
+        return null;
+      }
+    });
+    if (methodFrames == null) {
+      return null;
+    }
+    var index = method.instructions.indexOf(insn);
+    return index < methodFrames.length ? methodFrames[index] : null;
+  }
+}
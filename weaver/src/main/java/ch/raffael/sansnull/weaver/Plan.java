@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.analyzer.ClassInfo;
+import ch.raffael.sansnull.analyzer.NullCheck;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The checks for one method. {@code covered} is what {@code @SansNull}
+ * says, {@code parameters} and {@code returnValue} are the checks that
+ * will actually be inserted after eliding redundant ones.
+ */
+final class Plan {
+
+  @NotNull
+  final ClassInfo.Method method;
+  @NotNull
+  final NullCheck check;
+  final int[] slots;
+  final boolean[] covered;
+  final boolean[] parameters;
+  final boolean returnCovered;
+  boolean returnValue;
+
+  Plan(@NotNull ClassInfo.Method method, @NotNull NullCheck check, int[] slots, boolean[] covered,
+       boolean returnCovered) {
+    this.method = method;
+    this.check = check;
+    this.slots = slots;
+    this.covered = covered;
+    this.parameters = covered.clone();
+    this.returnCovered = returnCovered;
+    this.returnValue = returnCovered;
+  }
+
+  boolean isEmpty() {
+    if (returnCovered) {
+      return false;
+    }
+    for (var c : covered) {
+      if (c) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The index of the parameter in the given local variable slot, -1 if
+   * it's not a parameter.
+   */
+  int parameterIndex(int slot) {
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] == slot) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
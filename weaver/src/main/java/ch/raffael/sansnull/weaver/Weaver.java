@@ -0,0 +1,171 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.analyzer.Resolver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Inserts null checks for parameters and return values into methods
+ * covered by {@code @SansNull}, throwing the {@code exception()} with the
+ * {@code message()} of the {@code @SansNull}.
+ *
+ * <p> Checks that are provably redundant are left out, see
+ * {@link NonNullAnalysis}. Woven classes are marked, weaving a class
+ * twice doesn't change it. </p>
+ *
+ * <p> When weaving directories, the nullness metadata for the runtime
+ * library is written, too, see {@link MetadataWriter}. </p>
+ *
+ * <p> The weaver is thread-safe. </p>
+ */
+public final class Weaver {
+
+  @NotNull
+  private final Resolver resolver;
+  @NotNull
+  private final Supplier<? extends CheckEmitter> emitters;
+  private final LongAdder classes = new LongAdder();
+  private final LongAdder checks = new LongAdder();
+  private final LongAdder elided = new LongAdder();
+
+  public Weaver(@NotNull Resolver resolver) {
+    this(resolver, HelperEmitter::new);
+  }
+
+  /**
+   * @param emitters Creates the {@link CheckEmitter} for each class.
+   */
+  public Weaver(@NotNull Resolver resolver, @NotNull Supplier<? extends CheckEmitter> emitters) {
+    this.resolver = resolver;
+    this.emitters = emitters;
+  }
+
+  /**
+   * Weave a class. If the class isn't on the resolver's class path, the
+   * given class file will be used.
+   *
+   * @return The woven class or {@code null} if it hasn't been changed.
+   */
+  @Nullable
+  public byte[] weave(byte[] classFile) {
+    var node = new ClassNode();
+    new ClassReader(classFile).accept(node, 0);
+    var info = resolver.classPath().find(node.name, classFile);
+    if (info == null) {
+      return null;
+    }
+    var weaver = new ClassWeaver(resolver, info, node, emitters.get());
+    if (!weaver.weave()) {
+      return null;
+    }
+    classes.increment();
+    checks.add(weaver.checks());
+    elided.add(weaver.elided());
+    // the inserted code doesn't change the stack map frames, no need to compute them
+    var writer = new ClassWriter(0);
+    node.accept(writer);
+    return writer.toByteArray();
+  }
+
+  /**
+   * The nullness metadata of a class for the runtime library.
+   *
+   * @return The metadata or {@code null} if nothing is known about the
+   *         nullness of its members.
+   */
+  @Nullable
+  public byte[] metadata(byte[] classFile) {
+    var info = resolver.classPath().find(new ClassReader(classFile).getClassName(), classFile);
+    return info == null ? null : MetadataWriter.write(resolver, info);
+  }
+
+  /**
+   * Weave all class files in a directory in place and write their
+   * nullness metadata. Metadata of classes that don't exist anymore (e.g.
+   * removed by an incremental compile) is deleted.
+   */
+  public void weave(@NotNull Path directory) throws IOException {
+    try (var files = Files.walk(directory)) {
+      files.parallel()
+          .filter(Files::isRegularFile)
+          .forEach(f -> {
+            try {
+              var name = f.getFileName().toString();
+              if (name.endsWith(".class")) {
+                weaveFile(f, name.substring(0, name.length() - ".class".length()));
+              } else if (name.endsWith(MetadataWriter.EXTENSION)) {
+                var className = name.substring(0, name.length() - MetadataWriter.EXTENSION.length());
+                if (!Files.exists(f.resolveSibling(className + ".class"))) {
+                  Files.deleteIfExists(f);
+                }
+              }
+            }
+            catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void weaveFile(@NotNull Path classFile, @NotNull String className) throws IOException {
+    var content = Files.readAllBytes(classFile);
+    var woven = weave(content);
+    if (woven != null) {
+      Files.write(classFile, woven);
+    }
+    var metadataFile = classFile.resolveSibling(className + MetadataWriter.EXTENSION);
+    var metadata = metadata(content);
+    if (metadata != null) {
+      Files.write(metadataFile, metadata);
+    } else {
+      Files.deleteIfExists(metadataFile);
+    }
+  }
+
+  public long classes() {
+    return classes.sum();
+  }
+
+  public long checks() {
+    return checks.sum();
+  }
+
+  public long elided() {
+    return elided.sum();
+  }
+}
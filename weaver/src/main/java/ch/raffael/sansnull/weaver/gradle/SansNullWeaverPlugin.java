@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver.gradle;
+
+import ch.raffael.sansnull.analyzer.ClassPath;
+import ch.raffael.sansnull.analyzer.Resolver;
+import ch.raffael.sansnull.weaver.Weaver;
+import org.gradle.api.Action;
+import org.gradle.api.GradleException;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.tasks.compile.JavaCompile;
+
+import java.io.IOException;
+
+/**
+ * Weaves the output of all {@code JavaCompile} tasks right after
+ * compiling. Classes that have been woven already are skipped, so this
+ * works with incremental compilation.
+ */
+public class SansNullWeaverPlugin implements Plugin<Project> {
+
+  @Override
+  public void apply(Project project) {
+    project.getTasks().withType(JavaCompile.class).configureEach(task -> task.doLast(new WeaveAction()));
+  }
+
+  private static final class WeaveAction implements Action<Task> {
+    @Override
+    public void execute(Task task) {
+      var compile = (JavaCompile) task;
+      var destination = compile.getDestinationDir();
+      if (!destination.isDirectory()) {
+        return;
+      }
+      var classPath = new ClassPath().add(destination.toPath(), true);
+      compile.getClasspath().filter(f -> f.exists()).forEach(f -> classPath.add(f.toPath(), false));
+      try {
+        var weaver = new Weaver(new Resolver(classPath.load()));
+        weaver.weave(destination.toPath());
+        task.getLogger().info("SansNull: {} classes woven, {} checks inserted, {} redundant checks elided",
+            weaver.classes(), weaver.checks(), weaver.elided());
+      }
+      catch (IOException e) {
+        throw new GradleException("Error weaving " + destination + ": " + e, e);
+      }
+    }
+  }
+}
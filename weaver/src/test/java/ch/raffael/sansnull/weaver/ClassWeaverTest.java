@@ -0,0 +1,220 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.SansNull;
+import ch.raffael.sansnull.analyzer.ClassPath;
+import ch.raffael.sansnull.analyzer.Resolver;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Weaves the classes in the {@code fixtures} package and runs them. The
+ * tests run with {@code -Xverify:all}, so the woven code is verified,
+ * too.
+ */
+class ClassWeaverTest {
+
+  private static final String FIXTURES = "ch.raffael.sansnull.weaver.fixtures";
+
+  private Weaver weaver;
+  private ClassLoader loader;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    var classPath = new ClassPath()
+        .add(location(ClassWeaverTest.class), true)
+        .add(location(SansNull.class), false)
+        .load();
+    weaver = new Weaver(new Resolver(classPath));
+    loader = new WeavingClassLoader();
+  }
+
+  @Test
+  void allFixturesVerify() throws Exception {
+    var directory = location(ClassWeaverTest.class).resolve(FIXTURES.replace('.', '/'));
+    try (var files = Files.list(directory)) {
+      for (var file : (Iterable<Path>) files::iterator) {
+        var name = file.getFileName().toString();
+        if (name.endsWith(".class") && !name.equals("package-info.class")) {
+          Class.forName(FIXTURES + "." + name.substring(0, name.length() - ".class".length()), true, loader);
+        }
+      }
+    }
+    assertTrue(weaver.classes() > 0);
+  }
+
+  @Test
+  void constructors() throws Throwable {
+    assertEquals("xx", invoke(construct("Constructors", "x", 2), "value"));
+    assertCheckFails(() -> construct("Constructors", (Object) null));
+    assertCheckFails(() -> construct("Constructors", null, 2));
+  }
+
+  @Test
+  void localClasses() throws Throwable {
+    assertEquals("ab", invoke("LocalClasses", "local", "a", "b"));
+    assertEquals("a", invoke("LocalClasses", "anonymous", "a"));
+    assertCheckFails(() -> invoke("LocalClasses", "local", null, "b"));
+  }
+
+  @Test
+  void loopsAtOffsetZero() throws Throwable {
+    assertEquals(3, invoke("Loops", "whileLoop", "x", 3));
+    assertEquals("x,,", invoke("Loops", "doWhileLoop", "x", 2));
+    assertCheckFails(() -> invoke("Loops", "whileLoop", null, 3));
+    assertCheckFails(() -> invoke("Loops", "doWhileLoop", null, 2));
+  }
+
+  @Test
+  void interfaces() throws Throwable {
+    var impl = construct("Interfaces$Impl");
+    assertEquals("aa", invoke(impl, "ofDefault", "a"));
+    assertEquals("a", invoke("Interfaces", "ofStatic", "a"));
+    assertCheckFails(() -> invoke(impl, "ofDefault", (Object) null));
+    assertCheckFails(() -> invoke("Interfaces", "ofStatic", (Object) null));
+  }
+
+  @Test
+  void mutualRecursionDoesNotElideBothChecks() throws Throwable {
+    assertEquals(1, invoke("Recursion", "entry", "x"));
+    assertCheckFails(() -> invoke("Recursion", "entry", (Object) null));
+    // private methods may still be called using reflection
+    assertCheckFails(() -> invoke("Recursion", "odd", null, 1));
+    assertTrue(weaver.elided() > 0, "nothing elided");
+  }
+
+  private static void assertCheckFails(@NotNull Executable executable) {
+    var e = assertThrows(NullPointerException.class, executable);
+    assertTrue(e.getMessage() != null && e.getMessage().endsWith("must not be null"), e.getMessage());
+  }
+
+  private Object construct(@NotNull String className, Object... args) throws Throwable {
+    var constructor = Arrays.stream(fixture(className).getDeclaredConstructors())
+        .filter(c -> c.getParameterCount() == args.length)
+        .findFirst().orElseThrow();
+    try {
+      return constructor.newInstance(args);
+    }
+    catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private Object invoke(@NotNull String className, @NotNull String name, Object... args) throws Throwable {
+    return invokeMethod(fixture(className), null, name, args);
+  }
+
+  private Object invoke(@NotNull Object target, @NotNull String name, Object... args) throws Throwable {
+    return invokeMethod(target.getClass(), target, name, args);
+  }
+
+  private static Object invokeMethod(@NotNull Class<?> type, Object target, @NotNull String name, Object... args)
+      throws Throwable {
+    for (var c = type; c != null; c = c.getSuperclass()) {
+      var found = Arrays.stream(c.getDeclaredMethods()).filter(m -> m.getName().equals(name)).findFirst();
+      if (found.isEmpty()) {
+        found = Arrays.stream(c.getInterfaces())
+            .flatMap(i -> Arrays.stream(i.getDeclaredMethods()))
+            .filter(m -> m.getName().equals(name))
+            .findFirst();
+      }
+      if (found.isPresent()) {
+        var method = found.get();
+        method.setAccessible(true);
+        try {
+          return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    }
+    throw new NoSuchMethodException(type.getName() + "." + name);
+  }
+
+  @NotNull
+  private Class<?> fixture(@NotNull String className) throws ClassNotFoundException {
+    return Class.forName(FIXTURES + "." + className, true, loader);
+  }
+
+  @NotNull
+  private static Path location(@NotNull Class<?> type) throws URISyntaxException {
+    return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  /**
+   * Weaves the fixtures when loading them, everything else comes from the
+   * parent.
+   */
+  private final class WeavingClassLoader extends ClassLoader {
+
+    WeavingClassLoader() {
+      super(ClassWeaverTest.class.getClassLoader());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.startsWith(FIXTURES + ".")) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        var loaded = findLoadedClass(name);
+        if (loaded == null) {
+          byte[] classFile;
+          try (var in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+            if (in == null) {
+              throw new ClassNotFoundException(name);
+            }
+            classFile = in.readAllBytes();
+          }
+          catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+          }
+          var woven = weaver.weave(classFile);
+          if (woven != null) {
+            classFile = woven;
+          }
+          loaded = defineClass(name, classFile, 0, classFile.length);
+        }
+        if (resolve) {
+          resolveClass(loaded);
+        }
+        return loaded;
+      }
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2020 Raffael Herzog
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to
+ *  deal in the Software without restriction, including without limitation the
+ *  rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ *  sell copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ *  IN THE SOFTWARE.
+ */
+
+package ch.raffael.sansnull.weaver;
+
+import ch.raffael.sansnull.SansNull;
+import ch.raffael.sansnull.analyzer.ClassPath;
+import ch.raffael.sansnull.analyzer.Resolver;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataWriterTest {
+
+  private static final String FIXTURES = "ch/raffael/sansnull/weaver/fixtures/";
+
+  private Weaver weaver;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    var classPath = new ClassPath()
+        .add(location(MetadataWriterTest.class), true)
+        .add(location(SansNull.class), false)
+        .load();
+    weaver = new Weaver(new Resolver(classPath));
+  }
+
+  @Test
+  void constructorParameters() throws Exception {
+    var metadata = metadata("Constructors");
+    assertTrue(metadata.contains("m <init>(Ljava/lang/String;)V -N\n"), metadata);
+  }
+
+  @Test
+  void capturedVariablesOfLocalClasses() throws Exception {
+    var metadata = metadata("LocalClasses$1Local");
+    assertFalse(metadata.contains("m <init>"), metadata);
+    assertTrue(metadata.contains("m get()Ljava/lang/String; N\n"), metadata);
+  }
+
+  @NotNull
+  private String metadata(@NotNull String className) throws Exception {
+    var classFile = Files.readAllBytes(location(MetadataWriterTest.class).resolve(FIXTURES + className + ".class"));
+    var metadata = weaver.metadata(classFile);
+    assertNotNull(metadata, "no metadata for " + className);
+    return new String(metadata, StandardCharsets.UTF_8);
+  }
+
+  @NotNull
+  private static Path location(@NotNull Class<?> type) throws URISyntaxException {
+    return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+}